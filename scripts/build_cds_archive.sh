@@ -0,0 +1,22 @@
+#!/bin/bash
+# Builds an application class-data sharing (AppCDS) archive holding the classes
+# loaded by a simulation, so that later simulations start faster. Requires a
+# JDK 10 or later. Run scripts/build_and_test.sh first.
+#
+# AppCDS only archives classes loaded from jar files, hence the compiled classes
+# are packaged in built/lanSimulation.jar first. The archive is only used by a
+# JVM whose class path starts with that jar:
+#   java -XX:SharedArchiveFile=built/lanSimulation.jsa -cp built/lanSimulation.jar ...
+
+set -x
+
+SCRIPT_DIR=$(dirname "$0")
+OUTPUT_DIR="${SCRIPT_DIR}/../built"
+JAR="${OUTPUT_DIR}/lanSimulation.jar"
+CLASS_LIST="${OUTPUT_DIR}/lanSimulation.classlist"
+ARCHIVE="${OUTPUT_DIR}/lanSimulation.jsa"
+
+set -e
+jar cf "${JAR}" -C "${OUTPUT_DIR}" lanSimulation
+java -Xshare:off -XX:DumpLoadedClassList="${CLASS_LIST}" -ea -cp "${JAR}" lanSimulation.LANSimulation s > /dev/null
+java -Xshare:dump -XX:SharedClassListFile="${CLASS_LIST}" -XX:SharedArchiveFile="${ARCHIVE}" -cp "${JAR}"
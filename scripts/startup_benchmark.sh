@@ -0,0 +1,29 @@
+#!/bin/bash
+# Measures the cold start of a simulation: runs 'LANSimulation s' the given
+# number of times (default 20) without and with the AppCDS archive built by
+# scripts/build_cds_archive.sh, and prints the average wall-clock time per run.
+
+SCRIPT_DIR=$(dirname "$0")
+OUTPUT_DIR="${SCRIPT_DIR}/../built"
+JAR="${OUTPUT_DIR}/lanSimulation.jar"
+ARCHIVE="${OUTPUT_DIR}/lanSimulation.jsa"
+RUNS="${1:-20}"
+
+if [ ! -f "${ARCHIVE}" ]
+then
+	echo "No archive, run scripts/build_cds_archive.sh first"
+	exit 1
+fi
+
+run() {
+	local start end
+	start=$(date +%s%N)
+	for ((i = 0; i < RUNS; i++)); do
+		java "$@" -ea -cp "${JAR}" lanSimulation.LANSimulation s > /dev/null || exit 1
+	done
+	end=$(date +%s%N)
+	echo $(( (end - start) / RUNS / 1000000 ))
+}
+
+echo "without AppCDS: $(run -Xshare:auto) ms/run"
+echo "with AppCDS:    $(run -Xshare:auto -XX:SharedArchiveFile="${ARCHIVE}") ms/run"
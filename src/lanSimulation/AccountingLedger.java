@@ -0,0 +1,541 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * An <em>AccountingLedger</em> records every print job delivered by a
+ * <em>Network</em> in an append-only, columnar store on disk, and keeps the
+ * number of jobs and bytes per author and per printer in memory so that these
+ * totals are answered without reading the store.
+ * <p>
+ * The store is a directory holding a dictionary and a series of segments. The
+ * dictionary lists every distinct string (workstation, printer, author or
+ * title) once, as an int length followed by its UTF-8 bytes; a string is
+ * identified by its position in the dictionary. A segment holds one file per
+ * column: the ids of the workstation, printer, author and title as ints, the
+ * type as a byte (#ASCII or #POSTSCRIPT) and the size of the document as an
+ * int. When a segment holds #rowsPerSegment jobs, the ledger rolls over to a
+ * new segment; compact() merges all segments into one.
+ * </p>
+ * <p>
+ * The dictionary is written before any job using one of its new strings, so
+ * after a crash the store holds at most some jobs too few. Opening the store
+ * drops incomplete jobs and jobs referring to strings missing from the
+ * dictionary, together with all jobs recorded after them, and completes or
+ * discards an interrupted compaction.
+ * </p>
+ * <p>
+ * Like a <em>TraceRecorder</em>, recording never throws an
+ * <em>IOException</em>; use checkError() instead.
+ * </p>
+ *
+ * @see lanSimulation.Network#setAccountingLedger(AccountingLedger)
+ */
+public class AccountingLedger {
+	public static final byte ASCII = 0;
+	public static final byte POSTSCRIPT = 1;
+
+	private static final String DICTIONARY = "dictionary.dat";
+	/**
+	 * Names the file committing a compaction; it holds the number of the merged
+	 * segment, which replaces all segments with a lower number.
+	 */
+	private static final String COMPACTION = "compaction.commit";
+	private static final String TEMPORARY = ".tmp";
+	private static final String SEGMENT_PREFIX = "segment-";
+	private static final String[] COLUMNS = { ".workstation", ".printer", ".author", ".title", ".type", ".size" };
+	private static final int[] WIDTHS = { 4, 4, 4, 4, 1, 4 };
+	private static final int WORKSTATION = 0, PRINTER = 1, AUTHOR = 2, TITLE = 3, SIZE = 5;
+
+	private final File directory;
+	private final int rowsPerSegment;
+	/**
+	 * Maps the strings in the dictionary on their id.
+	 */
+	private final Hashtable ids;
+	/**
+	 * Holds the strings in the dictionary, in order of their id.
+	 */
+	private final List strings;
+	private DataOutputStream dictionaryOut;
+	/**
+	 * Holds the numbers of the segments, in ascending order; the last one is the
+	 * segment being appended to.
+	 */
+	private final List segments;
+	private int segmentRows;
+	private DataOutputStream[] columnsOut;
+	private long[] authorJobs, authorBytes, printerJobs, printerBytes;
+	private long nrOfJobs;
+	private boolean error;
+
+	/**
+	 * Open the ledger stored in #directory, creating it when it does not exist,
+	 * and rebuild the totals from the stored jobs.
+	 * <p>
+	 * <strong>Precondition:</strong> rowsPerSegment > 0;
+	 * </p>
+	 */
+	public AccountingLedger(File directory, int rowsPerSegment) throws IOException {
+		assert rowsPerSegment > 0;
+		this.directory = directory;
+		this.rowsPerSegment = rowsPerSegment;
+		this.ids = new Hashtable();
+		this.strings = new ArrayList();
+		this.segments = new ArrayList();
+		this.authorJobs = new long[16];
+		this.authorBytes = new long[16];
+		this.printerJobs = new long[16];
+		this.printerBytes = new long[16];
+		this.nrOfJobs = 0;
+		this.error = false;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Cannot create ledger directory " + directory);
+		}
+		recoverCompaction();
+		loadDictionary();
+		dictionaryOut = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(new File(directory, DICTIONARY), true)));
+		loadSegments();
+		if (segments.isEmpty() || (segmentRows >= rowsPerSegment)) {
+			startSegment(nextSegmentNumber());
+		} else {
+			openColumns(((Integer) segments.get(segments.size() - 1)).intValue());
+		}
+	}
+
+	/**
+	 * Record a print job of #size characters, sent by #workstation, delivered on
+	 * #printer and holding a document of given #author, #title and #type.
+	 */
+	public synchronized void record(String workstation, String printer, String author, String title, byte type,
+			int size) {
+		try {
+			int known = strings.size();
+			int printerId = idOf(printer);
+			int authorId = idOf(author);
+			int[] row = { idOf(workstation), printerId, authorId, idOf(title), type, size };
+			if (strings.size() > known) {
+				// the new strings must be on disk before any job referring to them
+				dictionaryOut.flush();
+			}
+			for (int i = 0; i < row.length; i++) {
+				if (WIDTHS[i] == 1) {
+					columnsOut[i].writeByte(row[i]);
+				} else {
+					columnsOut[i].writeInt(row[i]);
+				}
+			}
+			count(printerId, authorId, size);
+			segmentRows++;
+			if (segmentRows >= rowsPerSegment) {
+				closeColumns();
+				startSegment(nextSegmentNumber());
+			}
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	/**
+	 * Answer the number of print jobs recorded.
+	 */
+	public synchronized long nrOfJobs() {
+		return nrOfJobs;
+	}
+
+	/**
+	 * Answer the number of print jobs recorded for documents of #author.
+	 */
+	public synchronized long jobsByAuthor(String author) {
+		return total(authorJobs, author);
+	}
+
+	/**
+	 * Answer the total size of the documents of #author.
+	 */
+	public synchronized long bytesByAuthor(String author) {
+		return total(authorBytes, author);
+	}
+
+	/**
+	 * Answer the number of print jobs recorded for #printer.
+	 */
+	public synchronized long jobsByPrinter(String printer) {
+		return total(printerJobs, printer);
+	}
+
+	/**
+	 * Answer the total size of the documents printed on #printer.
+	 */
+	public synchronized long bytesByPrinter(String printer) {
+		return total(printerBytes, printer);
+	}
+
+	/**
+	 * Answer the number of segments in the store.
+	 */
+	public synchronized int nrOfSegments() {
+		return segments.size();
+	}
+
+	/**
+	 * Merge all segments into a single segment and continue recording in a new
+	 * one. The merged segment is written under temporary names; the compaction is
+	 * committed by renaming a marker file, after which the merged segment is
+	 * renamed and the old segments are removed. Opening the store completes a
+	 * committed compaction and discards an uncommitted one.
+	 */
+	public synchronized void compact() throws IOException {
+		closeColumns();
+		dictionaryOut.flush();
+		int merged = nextSegmentNumber();
+		for (int column = 0; column < COLUMNS.length; column++) {
+			FileOutputStream file = new FileOutputStream(temporaryFile(merged, column));
+			OutputStream out = new BufferedOutputStream(file);
+			try {
+				for (int i = 0; i < segments.size(); i++) {
+					copyColumn(((Integer) segments.get(i)).intValue(), column, out);
+				}
+				out.flush();
+				file.getFD().sync();
+			} finally {
+				out.close();
+			}
+		}
+
+		File marker = new File(directory, COMPACTION + TEMPORARY);
+		FileOutputStream file = new FileOutputStream(marker);
+		DataOutputStream out = new DataOutputStream(file);
+		try {
+			out.writeInt(merged);
+			out.flush();
+			file.getFD().sync();
+		} finally {
+			out.close();
+		}
+		if (!marker.renameTo(new File(directory, COMPACTION))) {
+			throw new IOException("Cannot rename " + marker);
+		}
+		completeCompaction(merged);
+
+		segments.clear();
+		segments.add(Integer.valueOf(merged));
+		startSegment(merged + 1);
+	}
+
+	/**
+	 * Answer whether recording some print job failed.
+	 */
+	public synchronized boolean checkError() {
+		flush();
+		return error;
+	}
+
+	/**
+	 * Write all buffered jobs on disk.
+	 */
+	public synchronized void flush() {
+		try {
+			dictionaryOut.flush();
+			for (int i = 0; i < columnsOut.length; i++) {
+				columnsOut[i].flush();
+			}
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	/**
+	 * Write all buffered jobs on disk and close the store.
+	 */
+	public synchronized void close() throws IOException {
+		dictionaryOut.close();
+		closeColumns();
+	}
+
+	private long total(long[] totals, String name) {
+		Integer id = (Integer) ids.get(name);
+		if ((id == null) || (id.intValue() >= totals.length)) {
+			return 0;
+		}
+		return totals[id.intValue()];
+	}
+
+	private void count(int printerId, int authorId, int size) {
+		int needed = Math.max(printerId, authorId) + 1;
+		if (needed > authorJobs.length) {
+			int length = Math.max(needed, authorJobs.length * 2);
+			authorJobs = Arrays.copyOf(authorJobs, length);
+			authorBytes = Arrays.copyOf(authorBytes, length);
+			printerJobs = Arrays.copyOf(printerJobs, length);
+			printerBytes = Arrays.copyOf(printerBytes, length);
+		}
+		authorJobs[authorId]++;
+		authorBytes[authorId] += size;
+		printerJobs[printerId]++;
+		printerBytes[printerId] += size;
+		nrOfJobs++;
+	}
+
+	private int idOf(String string) throws IOException {
+		Integer id = (Integer) ids.get(string);
+		if (id == null) {
+			id = Integer.valueOf(strings.size());
+			byte[] bytes = string.getBytes("UTF-8");
+			dictionaryOut.writeInt(bytes.length);
+			dictionaryOut.write(bytes);
+			ids.put(string, id);
+			strings.add(string);
+		}
+		return id.intValue();
+	}
+
+	/**
+	 * Complete the compaction committed in the store, if any, and remove all
+	 * temporary files left by an interrupted compaction.
+	 */
+	private void recoverCompaction() throws IOException {
+		File marker = new File(directory, COMPACTION);
+		if (marker.exists()) {
+			DataInputStream in = new DataInputStream(new FileInputStream(marker));
+			int merged;
+			try {
+				merged = in.readInt();
+			} finally {
+				in.close();
+			}
+			completeCompaction(merged);
+		}
+		File[] files = directory.listFiles();
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(TEMPORARY) && !files[i].delete()) {
+				throw new IOException("Cannot delete " + files[i]);
+			}
+		}
+	}
+
+	/**
+	 * Rename the columns of the #merged segment to their final names, remove the
+	 * segments it replaces and finally the marker committing the compaction.
+	 */
+	private void completeCompaction(int merged) throws IOException {
+		for (int column = 0; column < COLUMNS.length; column++) {
+			File temporary = temporaryFile(merged, column);
+			if (temporary.exists() && !temporary.renameTo(columnFile(merged, column))) {
+				throw new IOException("Cannot rename " + temporary);
+			}
+		}
+		String[] names = directory.list();
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].startsWith(SEGMENT_PREFIX) && !names[i].endsWith(TEMPORARY)) {
+				int segment = Integer.parseInt(names[i].substring(SEGMENT_PREFIX.length(), names[i].indexOf('.')));
+				if (segment < merged) {
+					new File(directory, names[i]).delete();
+				}
+			}
+		}
+		if (!new File(directory, COMPACTION).delete()) {
+			throw new IOException("Cannot delete " + COMPACTION);
+		}
+	}
+
+	private void loadDictionary() throws IOException {
+		File file = new File(directory, DICTIONARY);
+		if (!file.exists()) {
+			return;
+		}
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		long valid = 0;
+		try {
+			while (true) {
+				int length = in.readInt();
+				byte[] bytes = new byte[length];
+				in.readFully(bytes);
+				String string = new String(bytes, "UTF-8");
+				ids.put(string, Integer.valueOf(strings.size()));
+				strings.add(string);
+				valid += 4 + length;
+			}
+		} catch (EOFException exc) {
+			// end of dictionary, possibly after an incomplete entry
+		} finally {
+			in.close();
+		}
+		truncate(file, valid);
+	}
+
+	/**
+	 * Find the segments in the store and count their jobs. Jobs whose columns were
+	 * not completely written are dropped, as are jobs referring to strings that are
+	 * not in the dictionary and all jobs after them.
+	 */
+	private void loadSegments() throws IOException {
+		String[] names = directory.list();
+		for (int i = 0; i < names.length; i++) {
+			if (names[i].startsWith(SEGMENT_PREFIX) && names[i].endsWith(COLUMNS[AUTHOR])) {
+				String number = names[i].substring(SEGMENT_PREFIX.length(),
+						names[i].length() - COLUMNS[AUTHOR].length());
+				segments.add(Integer.valueOf(number));
+			}
+		}
+		java.util.Collections.sort(segments);
+
+		for (int i = 0; i < segments.size(); i++) {
+			int segment = ((Integer) segments.get(i)).intValue();
+			long rows = Long.MAX_VALUE;
+			for (int column = 0; column < COLUMNS.length; column++) {
+				rows = Math.min(rows, columnFile(segment, column).length() / WIDTHS[column]);
+			}
+			long valid = countSegment(segment, rows);
+			for (int column = 0; column < COLUMNS.length; column++) {
+				truncate(columnFile(segment, column), valid * WIDTHS[column]);
+			}
+			segmentRows = (int) valid;
+			if (valid < rows) {
+				// the jobs after a job with a lost string were recorded after the crash point
+				while (segments.size() > i + 1) {
+					int later = ((Integer) segments.remove(i + 1)).intValue();
+					for (int column = 0; column < COLUMNS.length; column++) {
+						columnFile(later, column).delete();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Count the first #rows jobs of #segment, stopping at the first job referring
+	 * to a string not in the dictionary, and answer the number of jobs counted.
+	 */
+	private long countSegment(int segment, long rows) throws IOException {
+		DataInputStream workstations = openColumn(segment, WORKSTATION);
+		DataInputStream printers = openColumn(segment, PRINTER);
+		DataInputStream authors = openColumn(segment, AUTHOR);
+		DataInputStream titles = openColumn(segment, TITLE);
+		DataInputStream sizes = openColumn(segment, SIZE);
+		int nrOfStrings = strings.size();
+		try {
+			for (long row = 0; row < rows; row++) {
+				int workstation = workstations.readInt();
+				int printer = printers.readInt();
+				int author = authors.readInt();
+				int title = titles.readInt();
+				int size = sizes.readInt();
+				if (!isValidId(workstation, nrOfStrings) | !isValidId(printer, nrOfStrings)
+						| !isValidId(author, nrOfStrings) | !isValidId(title, nrOfStrings)) {
+					return row;
+				}
+				count(printer, author, size);
+			}
+		} finally {
+			workstations.close();
+			printers.close();
+			authors.close();
+			titles.close();
+			sizes.close();
+		}
+		return rows;
+	}
+
+	private static boolean isValidId(int id, int nrOfStrings) {
+		return (id >= 0) && (id < nrOfStrings);
+	}
+
+	private DataInputStream openColumn(int segment, int column) throws IOException {
+		return new DataInputStream(
+				new BufferedInputStream(new FileInputStream(columnFile(segment, column)), 64 * 1024));
+	}
+
+	private void copyColumn(int segment, int column, OutputStream out) throws IOException {
+		InputStream in = new FileInputStream(columnFile(segment, column));
+		try {
+			byte[] buffer = new byte[64 * 1024];
+			int count;
+			while ((count = in.read(buffer)) > 0) {
+				out.write(buffer, 0, count);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void startSegment(int segment) throws IOException {
+		segments.add(Integer.valueOf(segment));
+		segmentRows = 0;
+		openColumns(segment);
+	}
+
+	private void openColumns(int segment) throws IOException {
+		columnsOut = new DataOutputStream[COLUMNS.length];
+		for (int column = 0; column < COLUMNS.length; column++) {
+			columnsOut[column] = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(columnFile(segment, column), true)));
+		}
+	}
+
+	private void closeColumns() throws IOException {
+		for (int column = 0; column < columnsOut.length; column++) {
+			columnsOut[column].close();
+		}
+	}
+
+	private int nextSegmentNumber() {
+		if (segments.isEmpty()) {
+			return 1;
+		}
+		return ((Integer) segments.get(segments.size() - 1)).intValue() + 1;
+	}
+
+	private File columnFile(int segment, int column) {
+		return new File(directory, segmentName(segment) + COLUMNS[column]);
+	}
+
+	private File temporaryFile(int segment, int column) {
+		return new File(directory, segmentName(segment) + COLUMNS[column] + TEMPORARY);
+	}
+
+	private static String segmentName(int segment) {
+		StringBuffer name = new StringBuffer(SEGMENT_PREFIX);
+		String number = Integer.toString(segment);
+		for (int i = number.length(); i < 6; i++) {
+			name.append('0');
+		}
+		return name.append(number).toString();
+	}
+
+	private static void truncate(File file, long length) throws IOException {
+		if (file.length() > length) {
+			RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			try {
+				raf.setLength(length);
+			} finally {
+				raf.close();
+			}
+		}
+	}
+}
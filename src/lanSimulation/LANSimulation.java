@@ -22,6 +22,12 @@ package lanSimulation;
 import lanSimulation.tests.*;
 import java.lang.AssertionError;
 import java.io.*;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class LANSimulation {
 
@@ -30,79 +36,88 @@ public class LANSimulation {
 	}
 
 	public static void simulate() {
+		simulate(System.out);
+	}
+
+	/**
+	 * Run one simulation on a fresh default network, writing its output on #out.
+	 * Each invocation uses its own network and report, hence simulations writing
+	 * on different streams may run concurrently.
+	 */
+	public static void simulate(PrintStream out) {
 		Network network = Network.defaultExample();
 		StringWriter report = new StringWriter(100);
 		StringBuffer buf = new StringBuffer(100);
 
-		System.out.print("siumlate on Network: ");
-		System.out.println(network);
-		System.out.println();
+		out.print("siumlate on Network: ");
+		out.println(network);
+		out.println();
 
 		network.printHTMLOn(buf);
-		System.out.println("---------------------------------HTML------------------------------------------");
-		System.out.println(buf.toString());
-		System.out.println();
+		out.println("---------------------------------HTML------------------------------------------");
+		out.println(buf.toString());
+		out.println();
 
 		buf.setLength(0);
 		network.printXMLOn(buf);
-		System.out.println("---------------------------------XML------------------------------------------");
-		System.out.println(buf.toString());
-		System.out.println();
+		out.println("---------------------------------XML------------------------------------------");
+		out.println(buf.toString());
+		out.println();
 
-		System.out.println("---------------------------------SCENARIOS------------------------------------------");
+		out.println("---------------------------------SCENARIOS------------------------------------------");
 		String workstation = "Filip";
 		String validPrinter = "Andy";
 		
 		String document = "author: FILIP   Hello World";
-		savePrintRequestInReport(network, workstation, document, validPrinter, report, true);
-		savePrintRequestInReport(network, workstation, document, "UnknownPrinter", report, false);
-		savePrintRequestInReport(network, workstation, document, "Hans", report, false);
-		savePrintRequestInReport(network, workstation, document, "n1", report, false);
+		savePrintRequestInReport(out, network, workstation, document, validPrinter, report, true);
+		savePrintRequestInReport(out, network, workstation, document, "UnknownPrinter", report, false);
+		savePrintRequestInReport(out, network, workstation, document, "Hans", report, false);
+		savePrintRequestInReport(out, network, workstation, document, "n1", report, false);
 
 		document = "Hello World";
-		savePrintRequestInReport(network, workstation, document, validPrinter, report, true);
+		savePrintRequestInReport(out, network, workstation, document, validPrinter, report, true);
 
 		document = "!PS Hello World in postscript.author:Filip.title:Hello.";
-		savePrintRequestInReport(network, workstation, document, validPrinter, report, true);
-		savePrintRequestInReport(network, workstation, document, "Hans", report, false);
+		savePrintRequestInReport(out, network, workstation, document, validPrinter, report, true);
+		savePrintRequestInReport(out, network, workstation, document, "Hans", report, false);
 
 		document = "!PS Hello World in postscript.Author:Filip.Title:Hello.";
-		savePrintRequestInReport(network, workstation, document, validPrinter, report, true);
+		savePrintRequestInReport(out, network, workstation, document, validPrinter, report, true);
 
 		document = "!PS Hello World in postscript.author:Filip;title:Hello;";
-		savePrintRequestInReport(network, workstation, document, validPrinter, report, true);
+		savePrintRequestInReport(out, network, workstation, document, validPrinter, report, true);
 
 		document = "!PS Hello World in postscript.author:.title:.";
-		savePrintRequestInReport(network, workstation, document, validPrinter, report, true);
+		savePrintRequestInReport(out, network, workstation, document, validPrinter, report, true);
 
 		try {
-			System.out.print("'UnknownWorkstation' prints 'does not matter' on 'does not matter': ");
-			System.out.print(network.requestWorkstationPrintsDocument("UnknownWorkstation", "does not matter",
+			out.print("'UnknownWorkstation' prints 'does not matter' on 'does not matter': ");
+			out.print(network.requestWorkstationPrintsDocument("UnknownWorkstation", "does not matter",
 					"does not matter", report));
-			System.out.println(" (??? no exception);");
+			out.println(" (??? no exception);");
 		} catch (AssertionError e1) {
-			System.out.println("exception (as expected);");
+			out.println("exception (as expected);");
 		}
 		;
 
-		System.out.print("BROADCAST REQUEST: ");
-		System.out.print(network.requestBroadcast(report));
-		System.out.println(" (expects true);");
+		out.print("BROADCAST REQUEST: ");
+		out.print(network.requestBroadcast(report));
+		out.println(" (expects true);");
 
-		System.out.println();
-		System.out.println();
-		System.out.println();
-		System.out.println("---------------------------------REPORT------------------------------------------");
-		System.out.println(report.toString());
+		out.println();
+		out.println();
+		out.println();
+		out.println("---------------------------------REPORT------------------------------------------");
+		out.println(report.toString());
 	}
 	
-	private static void savePrintRequestInReport(Network network, String workstation, String document, String printer, Writer report, boolean expected) {
-		System.out.print("'" + workstation + "' prints '" + document + "' on '" + printer + "': ");
-		System.out.print(network.requestWorkstationPrintsDocument(workstation, document, printer, report));
+	private static void savePrintRequestInReport(PrintStream out, Network network, String workstation, String document, String printer, Writer report, boolean expected) {
+		out.print("'" + workstation + "' prints '" + document + "' on '" + printer + "': ");
+		out.print(network.requestWorkstationPrintsDocument(workstation, document, printer, report));
 		if(expected) {
-			System.out.println(" (expects true);");
+			out.println(" (expects true);");
 		}else {
-			System.out.println(" (expects false);");
+			out.println(" (expects false);");
 		}
 		
 	}
@@ -110,11 +125,13 @@ public class LANSimulation {
 	public static void main(String args[]) {
 
 		if (args.length <= 0) {
-			System.out.println("Usage: t(est) | s(imulate) nrOfIterations '");
+			System.out.println("Usage: t(est) | s(imulate) nrOfIterations | p(arallel simulate) nrOfIterations [nrOfThreads] '");
 		} else if (args[0].equals("t")) {
 			doRegressionTests();
 		} else if (args[0].equals("s")) {
 			executeSimulateCommand(args);
+		} else if (args[0].equals("p")) {
+			executeParallelSimulateCommand(args);
 		} else {
 			printUnknownCommand(args);
 		}
@@ -132,6 +149,63 @@ public class LANSimulation {
 		}
 	}
 
+	private static void executeParallelSimulateCommand(String[] args) {
+		int nrOfIters = 1;
+		int nrOfThreads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 1) {
+			nrOfIters = Integer.parseInt(args[1]);
+		}
+		if (args.length > 2) {
+			nrOfThreads = Integer.parseInt(args[2]);
+		}
+
+		simulateInParallel(nrOfIters, nrOfThreads, System.out);
+		System.out.flush();
+	}
+
+	/**
+	 * Run #nrOfIters independent simulations on #nrOfThreads threads, printing
+	 * their outputs on #out in the order in which they would have run
+	 * sequentially. Every output is printed as soon as it and all earlier ones are
+	 * complete, and at most 2 * #nrOfThreads simulations are in flight, hence
+	 * long runs take no more memory than short ones.
+	 * <p>
+	 * <strong>Precondition:</strong> (nrOfIters >= 0) & (nrOfThreads > 0);
+	 * </p>
+	 */
+	public static void simulateInParallel(int nrOfIters, int nrOfThreads, PrintStream out) {
+		assert (nrOfIters >= 0) & (nrOfThreads > 0);
+		ExecutorService executor = Executors.newFixedThreadPool(nrOfThreads);
+		Callable<String> simulation = new Callable<String>() {
+			public String call() {
+				ByteArrayOutputStream output = new ByteArrayOutputStream(4096);
+				PrintStream simulationOut = new PrintStream(output);
+				simulate(simulationOut);
+				simulationOut.flush();
+				return output.toString();
+			}
+		};
+		try {
+			ArrayDeque<Future<String>> inFlight = new ArrayDeque<Future<String>>(2 * nrOfThreads);
+			for (int i = 0; i < nrOfIters; i++) {
+				if (inFlight.size() == 2 * nrOfThreads) {
+					out.print(inFlight.removeFirst().get());
+				}
+				inFlight.addLast(executor.submit(simulation));
+			}
+			while (!inFlight.isEmpty()) {
+				out.print(inFlight.removeFirst().get());
+			}
+		} catch (InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Parallel simulation interrupted", exc);
+		} catch (ExecutionException exc) {
+			throw new IllegalStateException("Parallel simulation failed", exc.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
 	private static void printUnknownCommand(String[] args) {
 		System.out.print("Unknown command to LANSimulation: '");
 		System.out.print(args[0]);
@@ -0,0 +1,113 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.util.BitSet;
+import java.util.function.Predicate;
+
+/**
+ * A <em>MulticastGroup</em> defines the destinations of a multicast packet,
+ * either as a set of node names, as a <em>NodeKind</em> or as a predicate over
+ * nodes. Membership is tested through a bit set over the positions on the token
+ * ring, which is computed once per topology of the ring.
+ *
+ * @see lanSimulation.Network#requestMulticast(MulticastGroup, java.io.Writer)
+ */
+public class MulticastGroup {
+	private final String[] names;
+	private final Predicate<Node> predicate;
+	/**
+	 * Holds the ring index #members was computed for; null when not yet computed.
+	 */
+	private RingIndex indexedRing;
+	/**
+	 * Holds the positions of the members on the ring indexed by #indexedRing.
+	 */
+	private BitSet members;
+
+	private MulticastGroup(String[] names, Predicate<Node> predicate) {
+		this.names = names;
+		this.predicate = predicate;
+		this.indexedRing = null;
+		this.members = null;
+	}
+
+	/**
+	 * Answer a group consisting of the nodes named #names.
+	 * <p>
+	 * <strong>Precondition:</strong> names != null;
+	 * </p>
+	 */
+	public static MulticastGroup ofNames(String[] names) {
+		assert names != null;
+		return new MulticastGroup(names.clone(), null);
+	}
+
+	/**
+	 * Answer a group consisting of all nodes of #kind.
+	 */
+	public static MulticastGroup ofKind(NodeKind kind) {
+		return new MulticastGroup(null, node -> node.kind_ == kind);
+	}
+
+	/**
+	 * Answer a group consisting of all nodes satisfying #predicate.
+	 */
+	public static MulticastGroup matching(Predicate<Node> predicate) {
+		return new MulticastGroup(null, predicate);
+	}
+
+	/**
+	 * Answer the names requested for this group, or null when the group is
+	 * defined by a kind or a predicate.
+	 */
+	String[] names() {
+		return names;
+	}
+
+	/**
+	 * Answer the positions of the members of this group on the ring indexed by
+	 * #index. The answer is shared and must not be modified.
+	 */
+	synchronized BitSet members(RingIndex index) {
+		if (indexedRing != index) {
+			BitSet bits = new BitSet(index.size());
+			if (names != null) {
+				for (int i = 0; i < names.length; i++) {
+					int position = index.positionOf(names[i]);
+					if (position >= 0) {
+						bits.set(position);
+					}
+				}
+			} else {
+				Node[] nodes = index.toArray();
+				for (int i = 0; i < nodes.length; i++) {
+					if (predicate.test(nodes[i])) {
+						bits.set(i);
+					}
+				}
+			}
+			members = bits;
+			indexedRing = index;
+		}
+		return members;
+	}
+}
@@ -0,0 +1,268 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+/**
+ * A <em>NameIndex</em> is an immutable index of the names of the nodes of a
+ * <em>RingIndex</em>: it maps the hash of every name on the id of the chunk
+ * holding the node, and the chunk itself tells which of its nodes bears the
+ * name. Adding or removing a name answers a new index that copies only the path
+ * to its hash; everything else is shared with the old index, so every version
+ * of the token ring has its own index without rebuilding it.
+ * <p>
+ * The index is a hash array mapped trie: every level consumes #BITS bits of the
+ * hash, and a branch holds only the children that are present, as flagged in
+ * its bitmap. Equal hashes share an entry chain. The index holds no references
+ * to the nodes or their names, so the garbage collector keeps laying these out
+ * in order of the ring.
+ * </p>
+ */
+final class NameIndex {
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	static final NameIndex EMPTY = new NameIndex(new Branch(0, new Object[0]));
+
+	/**
+	 * Holds the root of the trie, a branch.
+	 */
+	private final Branch root;
+
+	private NameIndex(Branch root) {
+		this.root = root;
+	}
+
+	/**
+	 * An entry of the trie: a name with hash #hash lies in the chunk with id
+	 * #chunk. #next holds the next entry with the same hash, if any.
+	 */
+	static final class Entry {
+		final int hash;
+		final int chunk;
+		final Entry next;
+
+		Entry(int hash, int chunk, Entry next) {
+			this.hash = hash;
+			this.chunk = chunk;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * A branch of the trie; #children holds an Entry or a Branch for every bit
+	 * set in #bitmap, in order of the bits.
+	 */
+	private static final class Branch {
+		final int bitmap;
+		final Object[] children;
+
+		Branch(int bitmap, Object[] children) {
+			this.bitmap = bitmap;
+			this.children = children;
+		}
+	}
+
+	/**
+	 * Answer an index in which #hashes[i] lies in the chunk with id #chunks[i].
+	 */
+	static NameIndex of(int[] hashes, int[] chunks) {
+		Entry[] entries = new Entry[hashes.length];
+		for (int i = 0; i < hashes.length; i++) {
+			entries[i] = new Entry(hashes[i], chunks[i], null);
+		}
+		return new NameIndex(branchOf(entries, 0, entries.length, 0, new Entry[entries.length]));
+	}
+
+	/**
+	 * Answer the chain of entries with hash #hash, or null when there is none.
+	 */
+	Entry lookup(int hash) {
+		Object current = root;
+		for (int shift = 0; current instanceof Branch; shift += BITS) {
+			Branch branch = (Branch) current;
+			int bit = bitOf(hash, shift);
+			if ((branch.bitmap & bit) == 0) {
+				return null;
+			}
+			current = branch.children[Integer.bitCount(branch.bitmap & (bit - 1))];
+		}
+		Entry chain = (Entry) current;
+		return (chain.hash == hash) ? chain : null;
+	}
+
+	/**
+	 * Answer an index in which a name with hash #hash lies in the chunk with id
+	 * #chunk, next to all names already indexed.
+	 */
+	NameIndex with(int hash, int chunk) {
+		return new NameIndex((Branch) put(root, 0, new Entry(hash, chunk, null)));
+	}
+
+	/**
+	 * Answer an index in which one name less with hash #hash lies in the chunk
+	 * with id #chunk.
+	 */
+	NameIndex without(int hash, int chunk) {
+		Object changed = remove(root, 0, hash, chunk);
+		if (changed == root) {
+			return this;
+		}
+		if (changed == null) {
+			return EMPTY;
+		}
+		if (changed instanceof Entry) {
+			changed = new Branch(bitOf(((Entry) changed).hash, 0), new Object[] { changed });
+		}
+		return new NameIndex((Branch) changed);
+	}
+
+	private static Object put(Object current, int shift, Entry added) {
+		if (current instanceof Branch) {
+			Branch branch = (Branch) current;
+			int bit = bitOf(added.hash, shift);
+			int at = Integer.bitCount(branch.bitmap & (bit - 1));
+			if ((branch.bitmap & bit) == 0) {
+				Object[] children = new Object[branch.children.length + 1];
+				System.arraycopy(branch.children, 0, children, 0, at);
+				children[at] = added;
+				System.arraycopy(branch.children, at, children, at + 1, branch.children.length - at);
+				return new Branch(branch.bitmap | bit, children);
+			}
+			Object[] children = branch.children.clone();
+			children[at] = put(children[at], shift + BITS, added);
+			return new Branch(branch.bitmap, children);
+		}
+		Entry chain = (Entry) current;
+		if (chain.hash == added.hash) {
+			return new Entry(added.hash, added.chunk, chain);
+		}
+		// the hashes differ from here on: push the chain one level down
+		return put(new Branch(bitOf(chain.hash, shift), new Object[] { chain }), shift, added);
+	}
+
+	/**
+	 * Answer #current without one entry (#hash, #chunk): the same object when
+	 * there is no such entry, and null when nothing is left.
+	 */
+	private static Object remove(Object current, int shift, int hash, int chunk) {
+		if (current instanceof Entry) {
+			Entry chain = (Entry) current;
+			return (chain.hash == hash) ? unlink(chain, chunk) : chain;
+		}
+		Branch branch = (Branch) current;
+		int bit = bitOf(hash, shift);
+		if ((branch.bitmap & bit) == 0) {
+			return branch;
+		}
+		int at = Integer.bitCount(branch.bitmap & (bit - 1));
+		Object child = branch.children[at];
+		Object changed = remove(child, shift + BITS, hash, chunk);
+		if (changed == child) {
+			return branch;
+		}
+		if (changed != null) {
+			if ((branch.children.length == 1) && (changed instanceof Entry)) {
+				return changed;
+			}
+			Object[] children = branch.children.clone();
+			children[at] = changed;
+			return new Branch(branch.bitmap, children);
+		}
+		if (branch.children.length == 1) {
+			return null;
+		}
+		if ((branch.children.length == 2) && (branch.children[1 - at] instanceof Entry)) {
+			return branch.children[1 - at];
+		}
+		Object[] children = new Object[branch.children.length - 1];
+		System.arraycopy(branch.children, 0, children, 0, at);
+		System.arraycopy(branch.children, at + 1, children, at, children.length - at);
+		return new Branch(branch.bitmap & ~bit, children);
+	}
+
+	/**
+	 * Answer #chain without its first entry for #chunk, copying the entries
+	 * preceding it.
+	 */
+	private static Entry unlink(Entry chain, int chunk) {
+		if (chain == null) {
+			return null;
+		}
+		if (chain.chunk == chunk) {
+			return chain.next;
+		}
+		Entry rest = unlink(chain.next, chunk);
+		return (rest == chain.next) ? chain : new Entry(chain.hash, chain.chunk, rest);
+	}
+
+	/**
+	 * Answer the trie holding #entries[from..to), which share the hash bits below
+	 * #shift, using #spare as scratch space for the same range.
+	 */
+	private static Branch branchOf(Entry[] entries, int from, int to, int shift, Entry[] spare) {
+		int[] starts = new int[MASK + 2];
+		for (int i = from; i < to; i++) {
+			starts[((entries[i].hash >>> shift) & MASK) + 1]++;
+		}
+		int bitmap = 0, nrOfChildren = 0;
+		for (int slot = 0; slot <= MASK; slot++) {
+			if (starts[slot + 1] > 0) {
+				bitmap |= 1 << slot;
+				nrOfChildren++;
+			}
+			starts[slot + 1] += starts[slot];
+		}
+		int[] ends = starts.clone();
+		for (int i = from; i < to; i++) {
+			spare[from + ends[(entries[i].hash >>> shift) & MASK]++] = entries[i];
+		}
+		System.arraycopy(spare, from, entries, from, to - from);
+
+		Object[] children = new Object[nrOfChildren];
+		int child = 0;
+		for (int slot = 0; slot <= MASK; slot++) {
+			int start = from + starts[slot], end = from + starts[slot + 1];
+			if (start == end) {
+				continue;
+			}
+			if ((end - start == 1) || (shift + BITS >= Integer.SIZE)) {
+				children[child++] = chainOf(entries, start, end);
+			} else {
+				children[child++] = branchOf(entries, start, end, shift + BITS, spare);
+			}
+		}
+		return new Branch(bitmap, children);
+	}
+
+	/**
+	 * Answer the entries #entries[from..to), which have the same hash, as a chain.
+	 */
+	private static Entry chainOf(Entry[] entries, int from, int to) {
+		Entry chain = null;
+		for (int i = to - 1; i >= from; i--) {
+			chain = new Entry(entries[i].hash, entries[i].chunk, chain);
+		}
+		return chain;
+	}
+
+	private static int bitOf(int hash, int shift) {
+		return 1 << ((hash >>> shift) & MASK);
+	}
+}
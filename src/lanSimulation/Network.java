@@ -20,8 +20,17 @@
 package lanSimulation;
 
 import lanSimulation.internals.*;
+import java.util.BitSet;
 import java.util.Hashtable;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.io.*;
 
 /**
@@ -29,8 +38,18 @@ import java.io.*;
  * Area Network (LAN). The LAN network architecture is a token ring, implying
  * that packahes will be passed from one node to another, until they reached
  * their destination, or until they travelled the whole token ring.
+ * <p>
+ * A <em>Network</em> is an <em>Iterable</em> over the nodes on its token ring,
+ * starting at the first node. The nodes are visited lazily, so callers may stop
+ * early, and stream() / parallelStream() split the snapshot of the ring along
+ * its chunks.
+ * </p>
  */
-public class Network {
+public class Network implements Iterable<Node> {
+	private static final int ASCII_RENDERING = 0;
+	private static final int HTML_RENDERING = 1;
+	private static final int XML_RENDERING = 2;
+
 	/**
 	 * Holds a pointer to myself. Used to verify whether I am properly initialized.
 	 */
@@ -45,6 +64,60 @@ public class Network {
 	 * the requests for the network.
 	 */
 	private Hashtable workstations;
+	/**
+	 * Maps the names of printer groups on the names of their member printers.
+	 * Used to route print jobs addressed to a group.
+	 */
+	private Hashtable printerGroups;
+	/**
+	 * Holds whether packets travel the token ring in both directions (a dual or
+	 * counter-rotating ring) or only following the #nextNode_ links.
+	 */
+	private boolean dualRing;
+	/**
+	 * Counts the changes made to the topology of the token ring. Used to detect
+	 * whether derived information such as the #ringIndex is outdated.
+	 */
+	private volatile int modCount;
+	/**
+	 * Holds the latest published snapshot of the token ring; null when not yet
+	 * built.
+	 */
+	private volatile RingIndex ringIndex;
+	/**
+	 * Holds the ASCII, HTML and XML representations of #receiver rendered so far;
+	 * null when nothing has been rendered since the last topology change. Guarded
+	 * by #receiver, like the topology changes.
+	 */
+	private String[] renderings;
+	/**
+	 * Holds the recorder tracing the requests and topology changes of #receiver;
+	 * null when #receiver is not traced.
+	 */
+	private TraceRecorder traceRecorder;
+	/**
+	 * Holds the packets available for the next requests.
+	 */
+	private PacketPool packets;
+	/**
+	 * Holds the ledger recording the delivered print jobs; null when jobs are only
+	 * accounted in the report.
+	 */
+	private AccountingLedger ledger;
+	/**
+	 * Holds how much is written on the report of a request.
+	 */
+	private ReportVerbosity verbosity;
+	/**
+	 * Counts the requests handled so far. Used to sample the requests that are
+	 * traced fully.
+	 */
+	private final AtomicLong requestCount;
+	/**
+	 * Holds the modification count of the token ring at the time #renderings was
+	 * started.
+	 */
+	private int renderedModCount;
 
 	/**
 	 * Construct a <em>Network</em> suitable for holding #size Workstations.
@@ -58,6 +131,17 @@ public class Network {
 		initPtr = this;
 		firstNode = null;
 		workstations = new Hashtable(size, 1.0f);
+		printerGroups = new Hashtable();
+		dualRing = false;
+		modCount = 0;
+		ringIndex = null;
+		renderings = null;
+		renderedModCount = 0;
+		traceRecorder = null;
+		packets = new PacketPool(4);
+		ledger = null;
+		verbosity = ReportVerbosity.FULL;
+		requestCount = new AtomicLong();
 	}
 
 	/**
@@ -95,6 +179,34 @@ public class Network {
 		return network;
 	}
 
+	/**
+	 * Return a <em>Network</em> whose token ring consists of the given #nodes, in
+	 * the given order. The #nextNode_ of every node is set to the node following
+	 * it in #nodes, and the last node is linked to the first one. All workstations
+	 * in #nodes are registered.
+	 * <p>
+	 * <strong>Precondition:</strong> nodes.length > 0;
+	 * </p>
+	 * <p>
+	 * <strong>Postcondition:</strong>result.isInitialized();
+	 * </p>
+	 */
+	public static Network ringOf(Node[] nodes) {
+		assert nodes.length > 0;
+		final Network network = new Network(nodes.length);
+
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i].nextNode_ = nodes[(i + 1) % nodes.length];
+			if (nodes[i].kind_ == NodeKind.WORKSTATION) {
+				network.workstations.put(nodes[i].name_, nodes[i]);
+			}
+		}
+		network.firstNode = nodes[0];
+
+		assert network.isInitialized();
+		return network;
+	}
+
 	/**
 	 * Answer whether #receiver is properly initialized.
 	 */
@@ -119,6 +231,277 @@ public class Network {
 		return true;
 	};
 
+	/**
+	 * Define a printer group named #group with the given #printers as members. A
+	 * print job addressed to #group is routed to the member with the fewest jobs
+	 * in its queue, choosing the member nearest to the requesting workstation
+	 * when queues are equally long.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized() & (printers.length > 0);
+	 * </p>
+	 */
+	public void definePrinterGroup(String group, String[] printers) {
+		assert isInitialized() & (printers.length > 0);
+		printerGroups.put(group, printers.clone());
+		if (traceRecorder != null) {
+			traceRecorder.recordPrinterGroup(group, printers);
+		}
+	}
+
+	/**
+	 * Answer whether #receiver contains a printer group with the given name.
+	 * <p>
+	 * <strong>Precondition:</strong>this.isInitialized();
+	 * </p>
+	 */
+	public boolean hasPrinterGroup(String group) {
+		assert isInitialized();
+		return printerGroups.containsKey(group);
+	}
+
+	/**
+	 * Answer the member of printer group #group that should handle a job sent from
+	 * position #from of #index, or null when none of its members is a printer on
+	 * the ring.
+	 */
+	private Printer selectPrinter(RingIndex index, int from, String group) {
+		String[] members = (String[]) printerGroups.get(group);
+		Printer best = null;
+		int bestDepth = 0, bestDistance = 0;
+
+		for (int i = 0; i < members.length; i++) {
+			Printer candidate = printerAt(index, members[i]);
+			if (candidate == null) {
+				continue;
+			}
+			int to = index.positionOf(members[i]);
+			int depth = candidate.queueDepth();
+			int distance = index.forwardDistance(from, to);
+			if (dualRing) {
+				distance = Math.min(distance, index.size() - distance);
+			}
+			if ((best == null) || (depth < bestDepth) || ((depth == bestDepth) && (distance < bestDistance))) {
+				best = candidate;
+				bestDepth = depth;
+				bestDistance = distance;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Answer whether packets travel the token ring in both directions.
+	 */
+	public boolean isDualRing() {
+		return dualRing;
+	}
+
+	/**
+	 * Let packets travel the token ring in both directions (#dualRing is #true),
+	 * or only following the #nextNode_ links (#dualRing is #false). On a dual
+	 * ring, a print job is routed in whichever direction reaches the printer in
+	 * the fewest hops; packets for unknown destinations and broadcasts still
+	 * travel the whole ring.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork();
+	 * </p>
+	 */
+	public void setDualRing(boolean dualRing) {
+		assert consistentNetwork();
+		this.dualRing = dualRing;
+		if (dualRing) {
+			ringIndex();
+		}
+		if (traceRecorder != null) {
+			traceRecorder.recordDualRing(dualRing);
+		}
+	}
+
+	/**
+	 * Let #ledger record every print job delivered from now on, next to the
+	 * accounting in the report. Pass null to stop recording.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public void setAccountingLedger(AccountingLedger ledger) {
+		assert isInitialized();
+		this.ledger = ledger;
+	}
+
+	/**
+	 * Answer how much is written on the report of a request.
+	 */
+	public ReportVerbosity reportVerbosity() {
+		return verbosity;
+	}
+
+	/**
+	 * Let the requests write on their report as much as #verbosity tells. Use
+	 * ReportVerbosity.FULL (the default) to trace every node a packet passes.
+	 * <p>
+	 * <strong>Precondition:</strong> verbosity != null;
+	 * </p>
+	 */
+	public void setReportVerbosity(ReportVerbosity verbosity) {
+		assert verbosity != null;
+		this.verbosity = verbosity;
+	}
+
+	/**
+	 * Let #recorder trace all requests handled by #receiver and all changes to
+	 * its topology, starting with the current topology, printer groups and ring
+	 * mode. Pass null to stop tracing.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork();
+	 * </p>
+	 */
+	public void setTraceRecorder(TraceRecorder recorder) {
+		assert consistentNetwork();
+		traceRecorder = recorder;
+		if (recorder == null) {
+			return;
+		}
+		recorder.recordTopology(ringIndex().toArray());
+		Enumeration groups = printerGroups.keys();
+		while (groups.hasMoreElements()) {
+			String group = (String) groups.nextElement();
+			recorder.recordPrinterGroup(group, (String[]) printerGroups.get(group));
+		}
+		if (dualRing) {
+			recorder.recordDualRing(true);
+		}
+	}
+
+	/**
+	 * Notify #receiver that the token ring has been changed, e.g. by relinking
+	 * the #nextNode_ of some node. Invalidates the cached ring positions and the
+	 * cached printable representations. Relinking nodes is not safe while
+	 * requests are in flight; use insertNodeAfter() and removeNode() instead.
+	 * <p>
+	 * <strong>Precondition:</strong> isInitialized();
+	 * </p>
+	 */
+	public synchronized void topologyChanged() {
+		assert isInitialized();
+		modCount++;
+		if (traceRecorder != null) {
+			traceRecorder.recordTopology(ringIndex().toArray());
+		}
+	}
+
+	/**
+	 * Insert #node on the token ring right after the node named #predecessor, and
+	 * register it when it is a workstation. Requests in flight keep travelling the
+	 * ring as it was when they started; requests started afterwards see #node.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentRing(ringIndex()) & a node named
+	 * #predecessor is on the ring & no node named node.name_ is on the ring;
+	 * </p>
+	 */
+	public synchronized void insertNodeAfter(String predecessor, Node node) {
+		RingIndex current = ringIndex();
+		int position = current.positionOf(predecessor);
+		assert consistentRing(current) & (position >= 0) & (current.positionOf(node.name_) < 0);
+
+		int version = modCount + 1;
+		ringIndex = current.insertAfter(position, node, version);
+
+		Node previous = current.nodeAt(position);
+		node.nextNode_ = previous.nextNode_;
+		node.prevNode_ = previous;
+		previous.nextNode_.prevNode_ = node;
+		previous.nextNode_ = node;
+		if (node.kind_ == NodeKind.WORKSTATION) {
+			workstations.put(node.name_, node);
+		}
+		modCount = version;
+		if (traceRecorder != null) {
+			traceRecorder.recordInsert(predecessor, node);
+		}
+	}
+
+	/**
+	 * Remove the node named #name from the token ring, and unregister it when it
+	 * is a workstation. Requests and iterations in flight keep travelling the ring
+	 * as it was when they started.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentRing(ringIndex()) & a node named
+	 * #name is on the ring & the ring holds other nodes as well;
+	 * </p>
+	 */
+	public synchronized void removeNode(String name) {
+		RingIndex current = ringIndex();
+		int position = current.positionOf(name);
+		assert consistentRing(current) & (position >= 0) & (current.size() > 1);
+
+		int version = modCount + 1;
+		ringIndex = current.removeAt(position, version);
+
+		Node node = current.nodeAt(position);
+		Node previous = current.nodeAt((position + current.size() - 1) % current.size());
+		previous.nextNode_ = node.nextNode_;
+		node.nextNode_.prevNode_ = previous;
+		if (node == firstNode) {
+			firstNode = node.nextNode_;
+		}
+		if (node.kind_ == NodeKind.WORKSTATION) {
+			workstations.remove(node.name_);
+		}
+		modCount = version;
+		if (traceRecorder != null) {
+			traceRecorder.recordRemove(name);
+		}
+	}
+
+	/**
+	 * Answer the version of the topology of the token ring; every change of the
+	 * topology yields a higher version.
+	 */
+	public int topologyVersion() {
+		return ringIndex().modCount;
+	}
+
+	/**
+	 * Answer the latest snapshot of the token ring, rebuilding it from the
+	 * #nextNode_ links when the topology changed since it was last built.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork() when the topology
+	 * changed since the snapshot was last built;
+	 * </p>
+	 */
+	RingIndex ringIndex() {
+		RingIndex index = ringIndex;
+		if ((index == null) || (index.modCount != modCount)) {
+			index = rebuildRingIndex();
+		}
+		return index;
+	}
+
+	private synchronized RingIndex rebuildRingIndex() {
+		if ((ringIndex == null) || (ringIndex.modCount != modCount)) {
+			assert consistentNetwork();
+			ringIndex = RingIndex.build(firstNode, modCount);
+		}
+		return ringIndex;
+	}
+
+	/**
+	 * Answer whether a packet from position #from of #index reaches #destination
+	 * in fewer hops by travelling the ring backward.
+	 */
+	private boolean shorterBackward(RingIndex index, int from, String destination) {
+		if (!dualRing) {
+			return false;
+		}
+		int to = index.positionOf(destination);
+		if (to < 0) {
+			return false;
+		}
+		int forward = index.forwardDistance(from, to);
+		return forward > index.size() - forward;
+	}
+
 	/**
 	 * Answer whether #receiver is a consistent token ring network. A consistent
 	 * token ring network - contains at least one workstation and one printer - is
@@ -147,13 +530,60 @@ public class Network {
 		return verifyWorkstations(printersFound, workstationsFound, encountered);
 	}
 
+	/**
+	 * Answer whether the snapshot #ring is the token ring of a consistent network.
+	 * Snapshots are only built from a consistent network and are circular by
+	 * construction, while insertNodeAfter() and removeNode() keep the registered
+	 * workstations in line with the ring; what remains is that #ring contains at
+	 * least one workstation and one printer. Unlike consistentNetwork(), this may
+	 * be checked while the topology is being changed.
+	 */
+	static boolean consistentRing(RingIndex ring) {
+		return (ring.workstations() > 0) & (ring.printers() > 0);
+	}
+
+	/**
+	 * Answer whether a workstation named #workstation is on the snapshot #ring.
+	 */
+	private static boolean hasWorkstation(RingIndex ring, String workstation) {
+		int position = ring.positionOf(workstation);
+		return (position >= 0) && (ring.nodeAt(position).kind_ == NodeKind.WORKSTATION);
+	}
+
+	/**
+	 * Validate the token ring of #receiver, reporting every problem that makes it
+	 * inconsistent together with the offending nodes. Unlike consistentNetwork(),
+	 * which stops at the first problem, this checks the whole ring and splits the
+	 * work across all cores, hence it is meant for large rings.
+	 * <p>
+	 * <strong>Precondition:</strong>this.isInitialized();
+	 * </p>
+	 */
+	public TopologyDiagnostics validateTopology() {
+		assert isInitialized();
+		return new TopologyValidator(firstNode, workstations).validate();
+	}
+
+	/**
+	 * Answer an analytical model of the token ring of #receiver as it is now,
+	 * for predicting hops, utilisation and queueing delays without simulating.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentRing(ringIndex());
+	 * </p>
+	 */
+	public TokenRingModel tokenRingModel() {
+		RingIndex ring = ringIndex();
+		assert consistentRing(ring);
+		return TokenRingModel.of(ring, dualRing);
+	}
+
 	private boolean verifyWorkstations(int printersFound, int workstationsFound, Hashtable encountered) {
 		Enumeration iter;
 		Node currentNode;
 		iter = workstations.elements();
 		while (iter.hasMoreElements()) {
 			currentNode = (Node) iter.nextElement();
-			if (currentNode instanceof Workstation == false) {
+			if (currentNode.kind_ != NodeKind.WORKSTATION) {
 				return false;
 			}
 			
@@ -169,18 +599,20 @@ public class Network {
 		currentNode = firstNode;
 		while (!encountered.containsKey(currentNode.name_)) {
 			encountered.put(currentNode.name_, currentNode);
-			if (currentNode instanceof Workstation) {
+			switch (currentNode.kind_) {
+			case WORKSTATION:
 				workstationsFound++;
-			}
-			
-			if (currentNode instanceof Printer) {
+				break;
+			case PRINTER:
 				printersFound++;
+				break;
+			default:
 			}
 			
 			currentNode = send(currentNode);
 		}
 		
-		if (isFirstNode(currentNode)) {
+		if (currentNode != firstNode) {
 			return false;
 		}
 		// not circular
@@ -196,6 +628,48 @@ public class Network {
 		return true;
 	}
 
+	/**
+	 * Answer an iterator over the nodes on the token ring, starting at the first
+	 * node. The iterator traverses the ring as it was when the iterator was
+	 * created, whatever nodes are inserted or removed meanwhile.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork() when the topology
+	 * changed since the last snapshot of the ring;
+	 * </p>
+	 */
+	public Iterator<Node> iterator() {
+		return Spliterators.iterator(spliterator());
+	}
+
+	/**
+	 * Answer a spliterator over the nodes on the token ring, starting at the first
+	 * node. The spliterator traverses the latest snapshot of the ring and splits
+	 * along its chunks.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentNetwork() when the topology
+	 * changed since the last snapshot of the ring;
+	 * </p>
+	 */
+	public Spliterator<Node> spliterator() {
+		assert isInitialized();
+		RingIndex ring = ringIndex();
+		return new RingSpliterator(ring, 0, ring.size());
+	}
+
+	/**
+	 * Answer a sequential stream of the nodes on the token ring.
+	 */
+	public Stream<Node> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+
+	/**
+	 * Answer a parallel stream of the nodes on the token ring.
+	 */
+	public Stream<Node> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+
 	private Node send(Node currentNode) {
 		return currentNode.nextNode_;
 	}
@@ -205,7 +679,7 @@ public class Network {
 	 * #receiver sends a special broadcast packet across the token ring network,
 	 * which should be treated by all nodes.
 	 * <p>
-	 * <strong>Precondition:</strong> consistentNetwork();
+	 * <strong>Precondition:</strong> consistentRing(ringIndex());
 	 * </p>
 	 * 
 	 * @param report Stream that will hold a report about what happened when
@@ -214,7 +688,8 @@ public class Network {
 	 *         otherwise
 	 */
 	public boolean requestBroadcast(Writer report) {
-		assert consistentNetwork();
+		RingIndex ring = ringIndex();
+		assert consistentRing(ring);
 
 		try {
 			report.write("Broadcast Request\n");
@@ -222,36 +697,120 @@ public class Network {
 			
 		}
 
-		Node currentNode = firstNode;
-		Packet packet = new Packet("BROADCAST", firstNode.name_, firstNode.name_);
-		do {
-			currentNode.logging(report, packet);
-			
-			currentNode = send(currentNode);
-		} while (!packet.destination.equals(currentNode.name_));
+		Node first = ring.chunks[0][0];
+		Packet packet = packets.acquire(PacketKind.BROADCAST, "BROADCAST", first.name_, first.name_);
+		try {
+			packet.traced = traceRequest();
+			Node[][] chunks = ring.chunks;
+			for (int i = 0; i < chunks.length; i++) {
+				Node[] chunk = chunks[i];
+				for (int j = 0; j < chunk.length; j++) {
+					chunk[j].logging(report, packet);
+				}
+			}
+			summarise(report, packet, ring.size());
+		} finally {
+			packets.release(packet);
+		}
 
 		try {
 			report.write(">>> Broadcast travelled whole token ring.\n\n");
 		} catch (IOException exc) {
 			
 		}
-		
+
+		if (traceRecorder != null) {
+			traceRecorder.recordBroadcast(true);
+		}
 		return true;
 	}
 
+	/**
+	 * The #receiver is requested to multicast a message to the members of #group.
+	 * Therefore #receiver sends a multicast packet across the token ring network
+	 * once, which is accepted by every member it passes.
+	 * <p>
+	 * <strong>Precondition:</strong> consistentRing(ringIndex()) & (group != null);
+	 * </p>
+	 * 
+	 * @param group  The group of nodes that should accept the packet.
+	 * @param report Stream that will hold a report about what happened when
+	 *               handling the request.
+	 * @return Answer the delivery result per member, in order of travel: #true
+	 *         for every member that accepted the packet. Names requested by the
+	 *         group that are not on the token ring follow with #false.
+	 */
+	public Map<String, Boolean> requestMulticast(MulticastGroup group, Writer report) {
+		RingIndex ring = ringIndex();
+		assert consistentRing(ring) & (group != null);
+
+		try {
+			report.write("Multicast Request\n");
+		} catch (IOException exc) {
+			
+		}
+
+		BitSet members = group.members(ring);
+		Map<String, Boolean> deliveries = new LinkedHashMap<String, Boolean>();
+		Node first = ring.chunks[0][0];
+		int position = 0;
+		Packet packet = packets.acquire(PacketKind.MULTICAST, "MULTICAST", first.name_, first.name_);
+		try {
+			packet.traced = traceRequest();
+			Node[][] chunks = ring.chunks;
+			for (int i = 0; i < chunks.length; i++) {
+				Node[] chunk = chunks[i];
+				for (int j = 0; j < chunk.length; j++) {
+					if (members.get(position)) {
+						chunk[j].acceptMulticast(report, packet);
+						deliveries.put(chunk[j].name_, Boolean.TRUE);
+					}
+					chunk[j].logging(report, packet);
+					position++;
+				}
+			}
+			summarise(report, packet, position);
+		} finally {
+			packets.release(packet);
+		}
+
+		int delivered = deliveries.size();
+		String[] names = group.names();
+		if (names != null) {
+			for (int i = 0; i < names.length; i++) {
+				if (!deliveries.containsKey(names[i])) {
+					deliveries.put(names[i], Boolean.FALSE);
+				}
+			}
+		}
+
+		try {
+			report.write(">>> Multicast delivered to ");
+			report.write(String.valueOf(delivered));
+			report.write(" of ");
+			report.write(String.valueOf(deliveries.size()));
+			report.write(" members.\n\n");
+		} catch (IOException exc) {
+			
+		}
+		return deliveries;
+	}
+
 	/**
 	 * The #receiver is requested by #workstation to print #document on #printer.
 	 * Therefore #receiver sends a packet across the token ring network, until
 	 * either (1) #printer is reached or (2) the packet travelled complete token
-	 * ring.
+	 * ring. On a dual ring the packet travels in the shortest direction. When
+	 * #printer names a printer group, the job is routed to one of its members.
 	 * <p>
-	 * <strong>Precondition:</strong> consistentNetwork() &
-	 * hasWorkstation(workstation);
+	 * <strong>Precondition:</strong> consistentRing(ringIndex()) & a workstation
+	 * named #workstation is on the ring;
 	 * </p>
 	 * 
 	 * @param workstation Name of the workstation requesting the service.
 	 * @param document    Contents that should be printed on the printer.
-	 * @param printer     Name of the printer that should receive the document.
+	 * @param printer     Name of the printer or printer group that should receive
+	 *                    the document.
 	 * @param report      Stream that will hold a report about what happened when
 	 *                    handling the request.
 	 * @return Anwer #true when the print operation was succesful and #false
@@ -259,7 +818,8 @@ public class Network {
 	 */
 	public boolean requestWorkstationPrintsDocument(String workstation, String document, String printer,
 			Writer report) {
-		assert consistentNetwork() & hasWorkstation(workstation);
+		RingIndex ring = ringIndex();
+		assert consistentRing(ring) & hasWorkstation(ring, workstation);
 
 		try {
 			report.write("'");
@@ -274,24 +834,123 @@ public class Network {
 		}
 
 		boolean result = false;
-		Node startNode, currentNode;
-		Packet packet = new Packet(document, workstation, printer);
+		String requestedPrinter = printer;
+		int from = ring.positionOf(workstation);
 
-		startNode = (Node) workstations.get(workstation);
-		
-		startNode.logging(report, packet);
-		
-		currentNode = send(startNode);
-		while ((!packet.destination.equals(currentNode.name_)) & (!packet.origin.equals(currentNode.name_))) {
-			currentNode.logging(report, packet);
-			currentNode = send(currentNode);
+		if (printerGroups.containsKey(printer)) {
+			Printer groupMember = selectPrinter(ring, from, printer);
+			if (groupMember != null) {
+				routeToGroupMember(report, printer, groupMember);
+				printer = groupMember.name_;
+			}
+		}
+		Printer queue = printerAt(ring, printer);
+		if (queue != null) {
+			queue.jobQueued();
 		}
+		Packet packet = packets.acquire(PacketKind.UNICAST, document, workstation, printer);
+		boolean backward = shorterBackward(ring, from, printer);
+
+		try {
+			packet.traced = traceRequest();
+			Node[][] chunks = ring.chunks;
+			int chunk = ring.chunkOf(from);
+			int offset = from - ring.offsetOf(chunk);
+			Node currentNode = chunks[chunk][offset];
+			int hops = 0;
+			do {
+				currentNode.logging(report, packet);
+				hops++;
 
-		result = checkPacketDestination(report, currentNode, packet);
+				// send the packet on to the next node of the snapshot
+				if (!backward) {
+					if (++offset == chunks[chunk].length) {
+						chunk = (chunk + 1) % chunks.length;
+						offset = 0;
+					}
+				} else if (--offset < 0) {
+					chunk = (chunk + chunks.length - 1) % chunks.length;
+					offset = chunks[chunk].length - 1;
+				}
+				currentNode = chunks[chunk][offset];
+			} while ((!packet.destination.equals(currentNode.name_)) & (!packet.origin.equals(currentNode.name_)));
+			summarise(report, packet, hops);
 
+			result = checkPacketDestination(report, currentNode, packet);
+		} finally {
+			if (queue != null) {
+				queue.jobDone();
+			}
+			packets.release(packet);
+		}
+
+		if (traceRecorder != null) {
+			traceRecorder.recordPrint(workstation, document, requestedPrinter, result);
+		}
 		return result;
 	}
 
+	/**
+	 * Answer the printer named #name on the ring indexed by #index, or null when
+	 * there is no such printer.
+	 */
+	private static Printer printerAt(RingIndex index, String name) {
+		int position = index.positionOf(name);
+		if ((position < 0) || (index.nodeAt(position).kind_ != NodeKind.PRINTER)) {
+			return null;
+		}
+		return (Printer) index.nodeAt(position);
+	}
+
+	/**
+	 * Answer whether the request being started should be traced fully.
+	 */
+	private boolean traceRequest() {
+		return verbosity.traces(requestCount.getAndIncrement());
+	}
+
+	/**
+	 * Write on #report that #hops nodes passed #packet on, unless the passing of
+	 * #packet has been traced already.
+	 */
+	private static void summarise(Writer report, Packet packet, int hops) {
+		if (packet.traced) {
+			return;
+		}
+		try {
+			report.write("\tPacket passed on by ");
+			writeNumber(report, hops);
+			report.write(" nodes.\n");
+		} catch (IOException exc) {
+			
+		}
+	}
+
+	/**
+	 * Write the decimal digits of #number on #report without creating a string.
+	 * <p>
+	 * <strong>Precondition:</strong> number >= 0;
+	 * </p>
+	 */
+	private static void writeNumber(Writer report, int number) throws IOException {
+		if (number >= 10) {
+			writeNumber(report, number / 10);
+		}
+		report.write('0' + number % 10);
+	}
+
+	private void routeToGroupMember(Writer report, String group, Printer member) {
+		try {
+			report.write("\tPrinter group '");
+			report.write(group);
+			report.write("' routes job to '");
+			report.write(member.name_);
+			report.write("'.\n");
+		} catch (IOException exc) {
+			
+		}
+	}
+
 	private boolean checkPacketDestination(Writer report, Node currentNode, Packet packet) {
 		boolean result;
 		if (packet.destination.equals(currentNode.name_)) {
@@ -309,6 +968,28 @@ public class Network {
 		return result;
 	}
 
+	/**
+	 * Write the accounting of the document carried by #packet, which has been
+	 * delivered to a printer, on #report and record it in the accounting ledger.
+	 */
+	public void accountingDocument(Writer report, Packet packet) throws IOException {
+		report.write("\tAccounting -- author = '");
+		packet.writeAuthorOn(report);
+		report.write("' -- title = '");
+		packet.writeTitleOn(report);
+		report.write("'\n");
+		if (packet.isPostscript())
+			report.write(">>> Postscript job delivered.\n\n");
+		else
+			report.write(">>> ASCII Print job delivered.\n\n");
+		report.flush();
+		if (ledger != null) {
+			ledger.record(packet.origin, packet.destination, packet.author(), packet.title(),
+					packet.isPostscript() ? AccountingLedger.POSTSCRIPT : AccountingLedger.ASCII,
+					packet.message.length());
+		}
+	}
+
 	public void accountingDocument(Writer report, String author, String title) throws IOException {
 		report.write("\tAccounting -- author = '");
 		report.write(author);
@@ -330,9 +1011,7 @@ public class Network {
 	 */
 	public String toString() {
 		assert isInitialized();
-		StringBuffer buf = new StringBuffer(30 * workstations.size());
-		printOn(buf);
-		return buf.toString();
+		return rendering(ASCII_RENDERING);
 	}
 
 	/**
@@ -343,17 +1022,7 @@ public class Network {
 	 */
 	public void printOn(StringBuffer buf) {
 		assert isInitialized();
-		Node currentNode = firstNode;
-		do {
-			currentNode.printOn(buf);
-			buf.append(" -> ");
-			currentNode = send(currentNode);
-		} while (isFirstNode(currentNode));
-		buf.append(" ... ");
-	}
-
-	private boolean isFirstNode(Node currentNode) {
-		return currentNode != firstNode;
+		buf.append(rendering(ASCII_RENDERING));
 	}
 
 	/**
@@ -364,17 +1033,7 @@ public class Network {
 	 */
 	public void printHTMLOn(StringBuffer buf) {
 		assert isInitialized();
-
-		buf.append("<HTML>\n<HEAD>\n<TITLE>LAN Simulation</TITLE>\n</HEAD>\n<BODY>\n<H1>LAN SIMULATION</H1>");
-		Node currentNode = firstNode;
-		buf.append("\n\n<UL>");
-		do {
-			buf.append("\n\t<LI> ");
-			currentNode.printOn(buf);
-			buf.append(" </LI>");
-			currentNode = send(currentNode);
-		} while (isFirstNode(currentNode));
-		buf.append("\n\t<LI>...</LI>\n</UL>\n\n</BODY>\n</HTML>\n");
+		buf.append(rendering(HTML_RENDERING));
 	}
 
 	/**
@@ -385,14 +1044,64 @@ public class Network {
 	 */
 	public void printXMLOn(StringBuffer buf) {
 		assert isInitialized();
+		buf.append(rendering(XML_RENDERING));
+	}
 
-		Node currentNode = firstNode;
+	/**
+	 * Answer the representation of kind #kind, rendering it only when the
+	 * topology changed since it was last rendered.
+	 */
+	private synchronized String rendering(int kind) {
+		String[] cache = renderings;
+		if ((cache == null) || (renderedModCount != modCount)) {
+			cache = new String[3];
+			renderedModCount = modCount;
+			renderings = cache;
+		}
+		String result = cache[kind];
+		if (result == null) {
+			StringBuffer buf = new StringBuffer(30 * workstations.size());
+			switch (kind) {
+			case ASCII_RENDERING:
+				renderOn(buf);
+				break;
+			case HTML_RENDERING:
+				renderHTMLOn(buf);
+				break;
+			default:
+				renderXMLOn(buf);
+			}
+			result = buf.toString();
+			cache[kind] = result;
+		}
+		return result;
+	}
+
+	private void renderOn(StringBuffer buf) {
+		for (Node currentNode : this) {
+			currentNode.printOn(buf);
+			buf.append(" -> ");
+		}
+		buf.append(" ... ");
+	}
+
+	private void renderHTMLOn(StringBuffer buf) {
+		buf.append("<HTML>\n<HEAD>\n<TITLE>LAN Simulation</TITLE>\n</HEAD>\n<BODY>\n<H1>LAN SIMULATION</H1>");
+		buf.append("\n\n<UL>");
+		for (Node currentNode : this) {
+			buf.append("\n\t<LI> ");
+			currentNode.printOn(buf);
+			buf.append(" </LI>");
+		}
+		buf.append("\n\t<LI>...</LI>\n</UL>\n\n</BODY>\n</HTML>\n");
+	}
+
+	private void renderXMLOn(StringBuffer buf) {
 		buf.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n<network>");
-		do {
+		for (Node currentNode : this) {
 			buf.append("\n\t");
 			currentNode.printXMLOn(buf);
-			currentNode = send(currentNode);
-		} while (isFirstNode(currentNode));
+		}
 		buf.append("\n</network>");
 	}
 
@@ -0,0 +1,82 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+/**
+ * A <em>ReportVerbosity</em> tells how much a <em>Network</em> writes on the
+ * report of a request. A request is either traced fully, listing every node the
+ * packet passes, or summarised by the number of nodes that passed the packet on.
+ * The lines of a summarised request are not even formatted.
+ *
+ * @see lanSimulation.Network#setReportVerbosity(ReportVerbosity)
+ */
+public class ReportVerbosity {
+	/**
+	 * Trace every request fully. This is the default.
+	 */
+	public static final ReportVerbosity FULL = new ReportVerbosity(1);
+	/**
+	 * Summarise every request.
+	 */
+	public static final ReportVerbosity SUMMARY = new ReportVerbosity(0);
+
+	/**
+	 * Holds the number of requests per fully traced request; 0 when no request is
+	 * traced fully.
+	 */
+	private final int interval;
+
+	private ReportVerbosity(int interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * Answer a verbosity tracing 1 in #interval requests fully, starting with the
+	 * first, and summarising the others.
+	 * <p>
+	 * <strong>Precondition:</strong> interval > 0;
+	 * </p>
+	 */
+	public static ReportVerbosity sampled(int interval) {
+		assert interval > 0;
+		if (interval == 1) {
+			return FULL;
+		}
+		return new ReportVerbosity(interval);
+	}
+
+	/**
+	 * Answer whether the request numbered #request (counting from 0) should be
+	 * traced fully.
+	 */
+	boolean traces(long request) {
+		return (interval != 0) && (request % interval == 0);
+	}
+
+	public String toString() {
+		if (interval == 0) {
+			return "SUMMARY";
+		}
+		if (interval == 1) {
+			return "FULL";
+		}
+		return "SAMPLED(1 in " + interval + ")";
+	}
+}
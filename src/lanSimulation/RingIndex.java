@@ -0,0 +1,342 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.util.Arrays;
+
+/**
+ * A <em>RingIndex</em> is an immutable snapshot of the token ring of a
+ * <em>Network</em>: the nodes in order of travel, counted from the first node.
+ * Requests traverse the snapshot they started with, so a new version of the
+ * ring may be published while they are in flight.
+ * <p>
+ * The nodes are held in chunks of about #CHUNK_SIZE nodes. Inserting or
+ * removing a node answers a new snapshot that copies only the affected chunk and
+ * the array of chunks; all other chunks are shared with the old snapshot.
+ * </p>
+ * <p>
+ * Every chunk carries an id that is kept while the chunk is copied, so the
+ * <em>NameIndex</em> mapping names on nodes and chunk ids is carried forward
+ * from version to version and only changes for the names that moved. The ids
+ * of the #n chunks are always 0 .. n-1, hence a plain array maps them on the
+ * index of their chunk.
+ * </p>
+ */
+class RingIndex {
+	static final int CHUNK_SIZE = 64;
+
+	/**
+	 * Holds the nodes of the token ring in order of travel. No chunk is empty and
+	 * no chunk is ever modified once the snapshot has been built.
+	 */
+	final Node[][] chunks;
+	/**
+	 * Holds the position of the first node of every chunk.
+	 */
+	private final int[] offsets;
+	/**
+	 * Hold the id of every chunk, and the index in #chunks of every chunk id.
+	 * Shared between snapshots as long as no chunk is split or dropped.
+	 */
+	private final int[] chunkIds, chunkIndices;
+	private final int size;
+	/**
+	 * Count the workstations and the printers on the token ring.
+	 */
+	private final int workstations, printers;
+	/**
+	 * Holds the modification count of the network this snapshot is the version of.
+	 */
+	final int modCount;
+	/**
+	 * Maps the hashes of the names of the nodes on the ids of their chunks; null
+	 * when not yet computed.
+	 */
+	private volatile NameIndex names;
+
+	private RingIndex(Node[][] chunks, int[] chunkIds, int[] chunkIndices, int workstations, int printers,
+			NameIndex names, int modCount) {
+		this.chunks = chunks;
+		this.offsets = new int[chunks.length];
+		int position = 0;
+		for (int i = 0; i < chunks.length; i++) {
+			offsets[i] = position;
+			position += chunks[i].length;
+		}
+		this.chunkIds = chunkIds;
+		this.chunkIndices = chunkIndices;
+		this.size = position;
+		this.workstations = workstations;
+		this.printers = printers;
+		this.modCount = modCount;
+		this.names = names;
+	}
+
+	/**
+	 * Index the token ring starting at #firstNode. Building the index also
+	 * maintains the #prevNode_ links, so the ring may be travelled in both
+	 * directions afterwards.
+	 * <p>
+	 * <strong>Precondition:</strong> the ring starting at #firstNode is circular;
+	 * </p>
+	 */
+	static RingIndex build(Node firstNode, int modCount) {
+		int size = 0;
+		Node currentNode = firstNode;
+		do {
+			size++;
+			currentNode = currentNode.nextNode_;
+		} while (currentNode != firstNode);
+
+		Node[][] chunks = new Node[(size + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+		int[] ids = new int[chunks.length];
+		int workstations = 0, printers = 0;
+		for (int i = 0; i < chunks.length; i++) {
+			ids[i] = i;
+			chunks[i] = new Node[Math.min(CHUNK_SIZE, size - i * CHUNK_SIZE)];
+			for (int j = 0; j < chunks[i].length; j++) {
+				chunks[i][j] = currentNode;
+				if (currentNode.kind_ == NodeKind.WORKSTATION) {
+					workstations++;
+				} else if (currentNode.kind_ == NodeKind.PRINTER) {
+					printers++;
+				}
+				currentNode.nextNode_.prevNode_ = currentNode;
+				currentNode = currentNode.nextNode_;
+			}
+		}
+		return new RingIndex(chunks, ids, ids, workstations, printers, null, modCount);
+	}
+
+	/**
+	 * Answer a snapshot in which #node follows the node at #position, as version
+	 * #modCount.
+	 * <p>
+	 * <strong>Precondition:</strong> (position >= 0) & (position < size());
+	 * </p>
+	 */
+	RingIndex insertAfter(int position, Node node, int modCount) {
+		assert (position >= 0) & (position < size);
+		int chunk = chunkOf(position);
+		Node[] old = chunks[chunk];
+		Node[] changed = new Node[old.length + 1];
+		int at = position - offsets[chunk] + 1;
+		System.arraycopy(old, 0, changed, 0, at);
+		changed[at] = node;
+		System.arraycopy(old, at, changed, at + 1, old.length - at);
+		int workstations = this.workstations + ((node.kind_ == NodeKind.WORKSTATION) ? 1 : 0);
+		int printers = this.printers + ((node.kind_ == NodeKind.PRINTER) ? 1 : 0);
+
+		if (changed.length < 2 * CHUNK_SIZE) {
+			Node[][] newChunks = chunks.clone();
+			newChunks[chunk] = changed;
+			return new RingIndex(newChunks, chunkIds, chunkIndices, workstations, printers,
+					names().with(node.name_.hashCode(), chunkIds[chunk]), modCount);
+		}
+		// split the grown chunk in two halves; the second half gets the next id
+		Node[][] newChunks = new Node[chunks.length + 1][];
+		System.arraycopy(chunks, 0, newChunks, 0, chunk);
+		newChunks[chunk] = new Node[CHUNK_SIZE];
+		newChunks[chunk + 1] = new Node[changed.length - CHUNK_SIZE];
+		System.arraycopy(changed, 0, newChunks[chunk], 0, CHUNK_SIZE);
+		System.arraycopy(changed, CHUNK_SIZE, newChunks[chunk + 1], 0, changed.length - CHUNK_SIZE);
+		System.arraycopy(chunks, chunk + 1, newChunks, chunk + 2, chunks.length - chunk - 1);
+
+		int[] ids = new int[chunks.length + 1];
+		System.arraycopy(chunkIds, 0, ids, 0, chunk + 1);
+		ids[chunk + 1] = chunks.length;
+		System.arraycopy(chunkIds, chunk + 1, ids, chunk + 2, chunks.length - chunk - 1);
+		NameIndex newNames = names();
+		if (at < CHUNK_SIZE) {
+			newNames = newNames.with(node.name_.hashCode(), chunkIds[chunk]);
+		}
+		for (int j = 0; j < newChunks[chunk + 1].length; j++) {
+			int hash = newChunks[chunk + 1][j].name_.hashCode();
+			if (newChunks[chunk + 1][j] != node) {
+				newNames = newNames.without(hash, chunkIds[chunk]);
+			}
+			newNames = newNames.with(hash, chunks.length);
+		}
+		return new RingIndex(newChunks, ids, indicesOf(ids), workstations, printers, newNames, modCount);
+	}
+
+	/**
+	 * Answer a snapshot without the node at #position, as version #modCount.
+	 * <p>
+	 * <strong>Precondition:</strong> (position >= 0) & (position < size()) &
+	 * (size() > 1);
+	 * </p>
+	 */
+	RingIndex removeAt(int position, int modCount) {
+		assert (position >= 0) & (position < size) & (size > 1);
+		int chunk = chunkOf(position);
+		Node[] old = chunks[chunk];
+		int at = position - offsets[chunk];
+		Node node = old[at];
+		int workstations = this.workstations - ((node.kind_ == NodeKind.WORKSTATION) ? 1 : 0);
+		int printers = this.printers - ((node.kind_ == NodeKind.PRINTER) ? 1 : 0);
+		NameIndex newNames = names().without(node.name_.hashCode(), chunkIds[chunk]);
+
+		if (old.length == 1) {
+			// drop the chunk; the chunk with the last id takes over its id
+			int dropped = chunkIds[chunk], last = chunks.length - 1;
+			Node[][] newChunks = new Node[last][];
+			System.arraycopy(chunks, 0, newChunks, 0, chunk);
+			System.arraycopy(chunks, chunk + 1, newChunks, chunk, last - chunk);
+			int[] ids = new int[last];
+			System.arraycopy(chunkIds, 0, ids, 0, chunk);
+			System.arraycopy(chunkIds, chunk + 1, ids, chunk, last - chunk);
+			if (dropped != last) {
+				int renamed = chunkIndices[last];
+				ids[(renamed < chunk) ? renamed : renamed - 1] = dropped;
+				for (int j = 0; j < chunks[renamed].length; j++) {
+					int hash = chunks[renamed][j].name_.hashCode();
+					newNames = newNames.without(hash, last).with(hash, dropped);
+				}
+			}
+			return new RingIndex(newChunks, ids, indicesOf(ids), workstations, printers, newNames, modCount);
+		}
+		Node[] changed = new Node[old.length - 1];
+		System.arraycopy(old, 0, changed, 0, at);
+		System.arraycopy(old, at + 1, changed, at, old.length - at - 1);
+		Node[][] newChunks = chunks.clone();
+		newChunks[chunk] = changed;
+		return new RingIndex(newChunks, chunkIds, chunkIndices, workstations, printers, newNames, modCount);
+	}
+
+	private static int[] indicesOf(int[] ids) {
+		int[] indices = new int[ids.length];
+		for (int i = 0; i < ids.length; i++) {
+			indices[ids[i]] = i;
+		}
+		return indices;
+	}
+
+	/**
+	 * Answer the number of nodes on the token ring.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Answer the number of workstations on the token ring.
+	 */
+	int workstations() {
+		return workstations;
+	}
+
+	/**
+	 * Answer the number of printers on the token ring.
+	 */
+	int printers() {
+		return printers;
+	}
+
+	/**
+	 * Answer the index in #chunks of the chunk holding #position.
+	 * <p>
+	 * <strong>Precondition:</strong> (position >= 0) & (position < size());
+	 * </p>
+	 */
+	int chunkOf(int position) {
+		int low = 0, high = offsets.length - 1;
+		while (low < high) {
+			int middle = (low + high + 1) >>> 1;
+			if (offsets[middle] <= position) {
+				low = middle;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Answer the position of the first node of the chunk #chunk.
+	 */
+	int offsetOf(int chunk) {
+		return offsets[chunk];
+	}
+
+	/**
+	 * Answer the node at #position.
+	 */
+	Node nodeAt(int position) {
+		int chunk = chunkOf(position);
+		return chunks[chunk][position - offsets[chunk]];
+	}
+
+	/**
+	 * Answer the nodes of the token ring in order of travel, in a new array.
+	 */
+	Node[] toArray() {
+		Node[] nodes = new Node[size];
+		for (int i = 0; i < chunks.length; i++) {
+			System.arraycopy(chunks[i], 0, nodes, offsets[i], chunks[i].length);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Answer the position of the node named #name, or -1 when there is no such node.
+	 */
+	int positionOf(String name) {
+		for (NameIndex.Entry entry = names().lookup(name.hashCode()); entry != null; entry = entry.next) {
+			int chunk = chunkIndices[entry.chunk];
+			Node[] nodes = chunks[chunk];
+			for (int j = 0; j < nodes.length; j++) {
+				if (nodes[j].name_.equals(name)) {
+					return offsets[chunk] + j;
+				}
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Answer the index of the names of the nodes, building it on first use.
+	 */
+	private NameIndex names() {
+		NameIndex index = names;
+		if (index == null) {
+			int[] hashes = new int[size];
+			int[] ids = new int[size];
+			for (int i = 0; i < chunks.length; i++) {
+				for (int j = 0; j < chunks[i].length; j++) {
+					hashes[offsets[i] + j] = chunks[i][j].name_.hashCode();
+				}
+				Arrays.fill(ids, offsets[i], offsets[i] + chunks[i].length, chunkIds[i]);
+			}
+			index = NameIndex.of(hashes, ids);
+			names = index;
+		}
+		return index;
+	}
+
+	/**
+	 * Answer the number of hops a packet needs to travel from position #from to
+	 * position #to following the #nextNode_ links.
+	 */
+	int forwardDistance(int from, int to) {
+		return (to - from + size) % size;
+	}
+}
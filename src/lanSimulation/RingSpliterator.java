@@ -0,0 +1,120 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A <em>RingSpliterator</em> traverses the nodes of a snapshot of a token ring
+ * lazily, in order of travel. The snapshot never changes, so the traversal is
+ * not affected by nodes inserted or removed meanwhile. Splitting halves the
+ * remaining positions, at a chunk boundary of the snapshot whenever the
+ * remaining nodes span more than one chunk.
+ */
+class RingSpliterator implements Spliterator<Node> {
+	private static final int CHARACTERISTICS = ORDERED | DISTINCT | NONNULL | IMMUTABLE | SIZED | SUBSIZED;
+
+	private final RingIndex ring;
+	/**
+	 * Holds the position of the node to be traversed next, and its chunk and
+	 * offset within that chunk.
+	 */
+	private int position, chunk, offset;
+	/**
+	 * Holds the position following the last node to be traversed.
+	 */
+	private final int end;
+
+	/**
+	 * Construct a <em>RingSpliterator</em> traversing the nodes of #ring at the
+	 * positions #from up to #to.
+	 * <p>
+	 * <strong>Precondition:</strong> (0 <= from) & (from <= to) & (to <=
+	 * ring.size());
+	 * </p>
+	 */
+	RingSpliterator(RingIndex ring, int from, int to) {
+		assert (0 <= from) & (from <= to) & (to <= ring.size());
+		this.ring = ring;
+		this.end = to;
+		moveTo(from);
+	}
+
+	public boolean tryAdvance(Consumer<? super Node> action) {
+		if (position >= end) {
+			return false;
+		}
+		Node node = ring.chunks[chunk][offset];
+		advance();
+		action.accept(node);
+		return true;
+	}
+
+	public void forEachRemaining(Consumer<? super Node> action) {
+		Node[][] chunks = ring.chunks;
+		while (position < end) {
+			Node node = chunks[chunk][offset];
+			advance();
+			action.accept(node);
+		}
+	}
+
+	public Spliterator<Node> trySplit() {
+		if (end - position < 2) {
+			return null;
+		}
+		int last = ring.chunkOf(end - 1);
+		int middle;
+		if (last > chunk) {
+			middle = ring.offsetOf((chunk + last + 1) >>> 1);
+		} else {
+			middle = position + (end - position) / 2;
+		}
+		Spliterator<Node> prefix = new RingSpliterator(ring, position, middle);
+		moveTo(middle);
+		return prefix;
+	}
+
+	public long estimateSize() {
+		return end - position;
+	}
+
+	public int characteristics() {
+		return CHARACTERISTICS;
+	}
+
+	private void moveTo(int newPosition) {
+		position = newPosition;
+		if (newPosition < end) {
+			chunk = ring.chunkOf(newPosition);
+			offset = newPosition - ring.offsetOf(chunk);
+		}
+	}
+
+	private void advance() {
+		position++;
+		if (++offset == ring.chunks[chunk].length) {
+			chunk++;
+			offset = 0;
+		}
+	}
+}
@@ -0,0 +1,291 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A <em>ShardCoordinator</em> simulates a token ring that is partitioned into
+ * contiguous shards, each simulated by a <em>ShardWorker</em> running in a
+ * separate local process. Packets crossing a shard boundary are handed over to
+ * the next shard through the coordinator, using the length-prefixed frames of
+ * <em>ShardProtocol</em> over loopback sockets, and the coordinator assembles
+ * the reports of all shards.
+ * <p>
+ * Nodes are added one by one, in order of travel; a new worker is started
+ * whenever the current shard is full. Hence the coordinator itself only holds
+ * one shard worth of nodes, and rings that do not fit in a single JVM may be
+ * simulated.
+ * </p>
+ */
+public class ShardCoordinator {
+	/**
+	 * A <em>Shard</em> holds the connection with one worker.
+	 */
+	private static class Shard {
+		Process process;
+		Socket socket;
+		DataInputStream in;
+		DataOutputStream out;
+	}
+
+	private final int nodesPerShard;
+	/**
+	 * Holds the number of leading shards that hold one node more than
+	 * #nodesPerShard.
+	 */
+	private final int largerShards;
+	private final ServerSocket serverSocket;
+	private final List shards;
+	/**
+	 * Holds the nodes of the last shard not yet sent to its worker.
+	 */
+	private final List pending;
+	/**
+	 * Holds the number of nodes assigned to the last shard.
+	 */
+	private int lastShardSize;
+
+	/**
+	 * Construct a <em>ShardCoordinator</em> putting at most #nodesPerShard nodes
+	 * in every shard.
+	 * <p>
+	 * <strong>Precondition:</strong> nodesPerShard > 0;
+	 * </p>
+	 */
+	public ShardCoordinator(int nodesPerShard) throws IOException {
+		this(nodesPerShard, 0);
+		assert nodesPerShard > 0;
+	}
+
+	private ShardCoordinator(int nodesPerShard, int largerShards) throws IOException {
+		this.nodesPerShard = nodesPerShard;
+		this.largerShards = largerShards;
+		this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		this.serverSocket.setSoTimeout(60000);
+		this.shards = new ArrayList();
+		this.pending = new ArrayList();
+		this.lastShardSize = 0;
+	}
+
+	/**
+	 * Return a <em>ShardCoordinator</em> simulating the token ring of #network,
+	 * partitioned into #nrOfShards shards of (almost) equal size: the first
+	 * shards hold one node more than the others when the nodes do not divide
+	 * evenly. A ring with fewer nodes than #nrOfShards gets one shard per node.
+	 * <p>
+	 * <strong>Precondition:</strong> network.consistentNetwork() & (nrOfShards >
+	 * 0);
+	 * </p>
+	 */
+	public static ShardCoordinator partition(Network network, int nrOfShards) throws IOException {
+		assert network.consistentNetwork() & (nrOfShards > 0);
+		Node[] nodes = network.ringIndex().toArray();
+		ShardCoordinator coordinator = new ShardCoordinator(nodes.length / nrOfShards, nodes.length % nrOfShards);
+		for (int i = 0; i < nodes.length; i++) {
+			coordinator.addNode(nodes[i].kind_, nodes[i].name_);
+		}
+		return coordinator;
+	}
+
+	/**
+	 * Append a node of given #kind and #name to the token ring. The last node
+	 * added is linked to the first one.
+	 */
+	public void addNode(NodeKind kind, String name) throws IOException {
+		if (shards.isEmpty() || (lastShardSize == lastShardCapacity())) {
+			flushPending();
+			shards.add(startWorker());
+			lastShardSize = 0;
+		}
+		pending.add(kind.newNode(name));
+		lastShardSize++;
+		if (pending.size() >= 1024) {
+			flushPending();
+		}
+	}
+
+	/**
+	 * Answer the number of nodes the last shard may hold.
+	 */
+	private int lastShardCapacity() {
+		return (shards.size() <= largerShards) ? nodesPerShard + 1 : nodesPerShard;
+	}
+
+	/**
+	 * Answer the number of shards, i.e. the number of worker processes.
+	 */
+	public int nrOfShards() {
+		return shards.size();
+	}
+
+	/**
+	 * The #receiver is requested by #workstation to print #document on #printer,
+	 * with the same behaviour and report as
+	 * Network.requestWorkstationPrintsDocument().
+	 * <p>
+	 * <strong>Precondition:</strong> #workstation is a workstation on the ring;
+	 * </p>
+	 */
+	public boolean requestWorkstationPrintsDocument(String workstation, String document, String printer,
+			Writer report) throws IOException {
+		flushPending();
+		int startShard = locate(workstation);
+		assert startShard >= 0;
+
+		report.write("'");
+		report.write(workstation);
+		report.write("' requests printing of '");
+		report.write(document);
+		report.write("' on '");
+		report.write(printer);
+		report.write("' ...\n");
+
+		for (int i = 0; i <= shards.size(); i++) {
+			Shard shard = (Shard) shards.get((startShard + i) % shards.size());
+			ByteArrayOutputStream request = ShardProtocol.newFrame(ShardProtocol.PRINT);
+			DataOutputStream fields = new DataOutputStream(request);
+			ShardProtocol.writeString(fields, document);
+			ShardProtocol.writeString(fields, workstation);
+			ShardProtocol.writeString(fields, printer);
+			fields.writeBoolean(i == 0);
+			ShardProtocol.writeFrame(shard.out, request);
+
+			DataInputStream reply = ShardProtocol.readFrame(shard.in);
+			byte type = reply.readByte();
+			if (type == ShardProtocol.DELIVERED) {
+				boolean result = reply.readBoolean();
+				report.write(ShardProtocol.readString(reply));
+				report.flush();
+				return result;
+			}
+			report.write(ShardProtocol.readString(reply));
+			if (type == ShardProtocol.RETURNED) {
+				break;
+			}
+		}
+		report.write(">>> Destinition not found, print job cancelled.\n\n");
+		report.flush();
+		return false;
+	}
+
+	/**
+	 * The #receiver is requested to broadcast a message to all nodes, with the
+	 * same behaviour and report as Network.requestBroadcast().
+	 */
+	public boolean requestBroadcast(Writer report) throws IOException {
+		flushPending();
+		report.write("Broadcast Request\n");
+		for (int i = 0; i < shards.size(); i++) {
+			Shard shard = (Shard) shards.get(i);
+			ShardProtocol.writeFrame(shard.out, ShardProtocol.newFrame(ShardProtocol.BROADCAST));
+			DataInputStream reply = ShardProtocol.readFrame(shard.in);
+			reply.readByte();
+			report.write(ShardProtocol.readString(reply));
+		}
+		report.write(">>> Broadcast travelled whole token ring.\n\n");
+		return true;
+	}
+
+	/**
+	 * Stop all workers.
+	 */
+	public void close() throws IOException {
+		for (int i = 0; i < shards.size(); i++) {
+			Shard shard = (Shard) shards.get(i);
+			try {
+				ShardProtocol.writeFrame(shard.out, ShardProtocol.newFrame(ShardProtocol.SHUTDOWN));
+				shard.socket.close();
+				shard.process.waitFor();
+			} catch (IOException exc) {
+				shard.process.destroy();
+			} catch (InterruptedException exc) {
+				shard.process.destroy();
+				Thread.currentThread().interrupt();
+			}
+		}
+		shards.clear();
+		serverSocket.close();
+	}
+
+	/**
+	 * Answer the index of the shard holding the workstation named #name, or -1
+	 * when there is no such workstation.
+	 */
+	private int locate(String name) throws IOException {
+		for (int i = 0; i < shards.size(); i++) {
+			Shard shard = (Shard) shards.get(i);
+			ByteArrayOutputStream request = ShardProtocol.newFrame(ShardProtocol.LOCATE);
+			ShardProtocol.writeString(new DataOutputStream(request), name);
+			ShardProtocol.writeFrame(shard.out, request);
+
+			DataInputStream reply = ShardProtocol.readFrame(shard.in);
+			reply.readByte();
+			boolean found = reply.readBoolean();
+			if (found && (reply.readUnsignedByte() == NodeKind.WORKSTATION.ordinal())) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private void flushPending() throws IOException {
+		if (pending.isEmpty()) {
+			return;
+		}
+		ByteArrayOutputStream request = ShardProtocol.newFrame(ShardProtocol.ASSIGN);
+		DataOutputStream fields = new DataOutputStream(request);
+		fields.writeInt(pending.size());
+		for (int i = 0; i < pending.size(); i++) {
+			Node node = (Node) pending.get(i);
+			fields.writeByte(node.kind_.ordinal());
+			ShardProtocol.writeString(fields, node.name_);
+		}
+		ShardProtocol.writeFrame(((Shard) shards.get(shards.size() - 1)).out, request);
+		pending.clear();
+	}
+
+	private Shard startWorker() throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+				"lanSimulation.ShardWorker", serverSocket.getInetAddress().getHostAddress(),
+				Integer.toString(serverSocket.getLocalPort()));
+		builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+		builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+
+		Shard shard = new Shard();
+		shard.process = builder.start();
+		try {
+			shard.socket = serverSocket.accept();
+		} catch (IOException exc) {
+			shard.process.destroy();
+			throw exc;
+		}
+		shard.in = new DataInputStream(new BufferedInputStream(shard.socket.getInputStream()));
+		shard.out = new DataOutputStream(new BufferedOutputStream(shard.socket.getOutputStream()));
+		return shard;
+	}
+}
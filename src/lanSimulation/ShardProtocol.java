@@ -0,0 +1,115 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import java.io.*;
+
+/**
+ * Holds the frame types and the encoding shared by <em>ShardCoordinator</em>
+ * and <em>ShardWorker</em>. Every frame is a length-prefixed message: an int
+ * holding the number of bytes that follow, a byte holding the frame type and
+ * the fields of the frame. Strings are encoded as an int length followed by
+ * their UTF-8 bytes.
+ */
+class ShardProtocol {
+	/**
+	 * Coordinator to worker: append nodes to the shard. Fields: int count, then
+	 * per node the ordinal of its kind and its name.
+	 */
+	static final byte ASSIGN = 1;
+	/**
+	 * Coordinator to worker: answer whether the shard holds a node. Fields: name.
+	 * Answered by #LOCATED.
+	 */
+	static final byte LOCATE = 2;
+	/**
+	 * Coordinator to worker: send a packet across the shard. Fields: message,
+	 * origin, destination and whether the packet starts at its origin in this
+	 * shard. Answered by #PASSED, #DELIVERED or #RETURNED.
+	 */
+	static final byte PRINT = 3;
+	/**
+	 * Coordinator to worker: send a broadcast packet across the shard. Answered
+	 * by #PASSED.
+	 */
+	static final byte BROADCAST = 4;
+	/**
+	 * Coordinator to worker: stop the worker.
+	 */
+	static final byte SHUTDOWN = 5;
+	/**
+	 * Worker to coordinator: the shard holds the node. Fields: boolean found and
+	 * the ordinal of the kind of the node.
+	 */
+	static final byte LOCATED = 6;
+	/**
+	 * Worker to coordinator: the packet left the shard. Fields: report.
+	 */
+	static final byte PASSED = 7;
+	/**
+	 * Worker to coordinator: the packet reached its destination. Fields: boolean
+	 * result and report.
+	 */
+	static final byte DELIVERED = 8;
+	/**
+	 * Worker to coordinator: the packet returned to its origin. Fields: report.
+	 */
+	static final byte RETURNED = 9;
+
+	private ShardProtocol() {
+	}
+
+	/**
+	 * Return a stream on which the fields of a frame of type #type are written
+	 * before passing it to writeFrame().
+	 */
+	static ByteArrayOutputStream newFrame(byte type) {
+		ByteArrayOutputStream frame = new ByteArrayOutputStream(64);
+		frame.write(type);
+		return frame;
+	}
+
+	static void writeFrame(DataOutputStream out, ByteArrayOutputStream frame) throws IOException {
+		out.writeInt(frame.size());
+		frame.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Read the next frame from #in and answer a stream positioned on its type.
+	 */
+	static DataInputStream readFrame(DataInputStream in) throws IOException {
+		byte[] frame = new byte[in.readInt()];
+		in.readFully(frame);
+		return new DataInputStream(new ByteArrayInputStream(frame));
+	}
+
+	static void writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+}
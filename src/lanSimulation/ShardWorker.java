@@ -0,0 +1,177 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.io.*;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+/**
+ * A <em>ShardWorker</em> simulates one contiguous segment (shard) of a token
+ * ring in its own process. It connects to a <em>ShardCoordinator</em> and sends
+ * the packets handed over by the coordinator across its nodes, answering the
+ * report of the hops it simulated.
+ *
+ * <pre>
+ java -cp built lanSimulation.ShardWorker host port
+ * </pre>
+ *
+ * @see lanSimulation.ShardCoordinator
+ */
+public class ShardWorker {
+	/**
+	 * Holds the nodes of the shard in order of travel.
+	 */
+	private final List nodes;
+	/**
+	 * Maps the names of the nodes on their position in #nodes.
+	 */
+	private final Hashtable positions;
+	/**
+	 * Holds the network performing the accounting of delivered print jobs.
+	 */
+	private final Network accounting;
+
+	ShardWorker() {
+		nodes = new ArrayList();
+		positions = new Hashtable();
+		accounting = new Network(1);
+	}
+
+	public static void main(String args[]) throws IOException {
+		Socket socket = new Socket(args[0], Integer.parseInt(args[1]));
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+			new ShardWorker().serve(in, out);
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Handle the frames read from #in until a shutdown frame or the end of #in.
+	 */
+	void serve(DataInputStream in, DataOutputStream out) throws IOException {
+		while (true) {
+			DataInputStream frame;
+			try {
+				frame = ShardProtocol.readFrame(in);
+			} catch (EOFException exc) {
+				return;
+			}
+			switch (frame.readByte()) {
+			case ShardProtocol.ASSIGN:
+				assign(frame);
+				break;
+			case ShardProtocol.LOCATE:
+				ShardProtocol.writeFrame(out, locate(ShardProtocol.readString(frame)));
+				break;
+			case ShardProtocol.PRINT:
+				ShardProtocol.writeFrame(out, print(frame));
+				break;
+			case ShardProtocol.BROADCAST:
+				ShardProtocol.writeFrame(out, broadcast());
+				break;
+			case ShardProtocol.SHUTDOWN:
+				return;
+			default:
+				throw new IOException("Unknown shard frame");
+			}
+		}
+	}
+
+	private void assign(DataInputStream frame) throws IOException {
+		int count = frame.readInt();
+		NodeKind[] kinds = NodeKind.values();
+		for (int i = 0; i < count; i++) {
+			Node node = kinds[frame.readUnsignedByte()].newNode(ShardProtocol.readString(frame));
+			positions.put(node.name_, Integer.valueOf(nodes.size()));
+			nodes.add(node);
+		}
+	}
+
+	private ByteArrayOutputStream locate(String name) throws IOException {
+		ByteArrayOutputStream frame = ShardProtocol.newFrame(ShardProtocol.LOCATED);
+		DataOutputStream fields = new DataOutputStream(frame);
+		Integer position = (Integer) positions.get(name);
+		fields.writeBoolean(position != null);
+		if (position == null) {
+			fields.writeByte(NodeKind.NODE.ordinal());
+		} else {
+			fields.writeByte(((Node) nodes.get(position.intValue())).kind_.ordinal());
+		}
+		return frame;
+	}
+
+	/**
+	 * Send a print packet across the shard, following the same rules as
+	 * Network.requestWorkstationPrintsDocument().
+	 */
+	private ByteArrayOutputStream print(DataInputStream request) throws IOException {
+		String message = ShardProtocol.readString(request);
+		String origin = ShardProtocol.readString(request);
+		String destination = ShardProtocol.readString(request);
+		boolean startsHere = request.readBoolean();
+		Packet packet = new Packet(PacketKind.UNICAST, message, origin, destination);
+		StringWriter report = new StringWriter(100);
+
+		int position = 0;
+		if (startsHere) {
+			position = ((Integer) positions.get(origin)).intValue();
+			((Node) nodes.get(position)).logging(report, packet);
+			position++;
+		}
+		for (; position < nodes.size(); position++) {
+			Node currentNode = (Node) nodes.get(position);
+			if (packet.destination.equals(currentNode.name_)) {
+				boolean result = packet.printDocument(currentNode, accounting, report);
+				ByteArrayOutputStream frame = ShardProtocol.newFrame(ShardProtocol.DELIVERED);
+				DataOutputStream fields = new DataOutputStream(frame);
+				fields.writeBoolean(result);
+				ShardProtocol.writeString(fields, report.toString());
+				return frame;
+			}
+			if (packet.origin.equals(currentNode.name_)) {
+				return reportFrame(ShardProtocol.RETURNED, report);
+			}
+			currentNode.logging(report, packet);
+		}
+		return reportFrame(ShardProtocol.PASSED, report);
+	}
+
+	private ByteArrayOutputStream broadcast() throws IOException {
+		StringWriter report = new StringWriter(100);
+		Packet packet = new Packet(PacketKind.BROADCAST, "BROADCAST", "", "");
+		for (int position = 0; position < nodes.size(); position++) {
+			((Node) nodes.get(position)).logging(report, packet);
+		}
+		return reportFrame(ShardProtocol.PASSED, report);
+	}
+
+	private static ByteArrayOutputStream reportFrame(byte type, StringWriter report) throws IOException {
+		ByteArrayOutputStream frame = ShardProtocol.newFrame(type);
+		ShardProtocol.writeString(new DataOutputStream(frame), report.toString());
+		return frame;
+	}
+}
@@ -0,0 +1,308 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A <em>TokenRingModel</em> predicts the behaviour of a <em>Network</em> under a
+ * <em>JobMix</em> without simulating it hop by hop. The model only keeps the
+ * length of the token ring and the positions of its workstations and printers.
+ * <p>
+ * Hops are counted like the summarised report of a request counts them: the
+ * number of nodes passing the packet on. A print job issued by a workstation
+ * chosen uniformly goes to a printer chosen uniformly; a broadcast passes every
+ * node. The token ring and every printer are taken as M/M/1 queues, the token
+ * ring serving one packet at a time.
+ * </p>
+ *
+ * @see lanSimulation.Network#tokenRingModel()
+ */
+public class TokenRingModel {
+
+	/**
+	 * A <em>JobMix</em> describes the requests offered to a network.
+	 */
+	public static class JobMix {
+		/** Holds the number of requests per time unit. */
+		public final double requestRate;
+		/** Holds the fraction of the requests that are broadcasts. */
+		public final double broadcastFraction;
+		/** Holds the time a node needs to pass a packet on. */
+		public final double hopTime;
+		/** Holds the mean time a printer needs to print a job. */
+		public final double printTime;
+
+		/**
+		 * Construct a <em>JobMix</em> of #requestRate requests per time unit, of
+		 * which #broadcastFraction are broadcasts and the others print jobs.
+		 * <p>
+		 * <strong>Precondition:</strong> (requestRate >= 0.0) &
+		 * (broadcastFraction >= 0.0) & (broadcastFraction <= 1.0) & (hopTime >=
+		 * 0.0) & (printTime >= 0.0);
+		 * </p>
+		 */
+		public JobMix(double requestRate, double broadcastFraction, double hopTime, double printTime) {
+			assert (requestRate >= 0.0) & (broadcastFraction >= 0.0) & (broadcastFraction <= 1.0)
+					& (hopTime >= 0.0) & (printTime >= 0.0);
+			this.requestRate = requestRate;
+			this.broadcastFraction = broadcastFraction;
+			this.hopTime = hopTime;
+			this.printTime = printTime;
+		}
+	}
+
+	/**
+	 * A <em>Prediction</em> holds what a <em>TokenRingModel</em> expects of a
+	 * <em>JobMix</em>. Delays are infinite when a queue is saturated.
+	 */
+	public static class Prediction {
+		/** Holds the expected number of hops per request. */
+		public final double expectedHops;
+		/** Holds the fraction of time the token ring carries a packet. */
+		public final double ringUtilisation;
+		/** Holds the expected time a request waits for the token ring. */
+		public final double ringQueueingDelay;
+		/** Holds the expected time from issuing a request until it has travelled. */
+		public final double ringResponseTime;
+		/** Holds the fraction of time a printer is printing. */
+		public final double printerUtilisation;
+		/** Holds the expected time a print job waits for its printer. */
+		public final double printerQueueingDelay;
+
+		Prediction(double expectedHops, double ringUtilisation, double ringQueueingDelay, double ringResponseTime,
+				double printerUtilisation, double printerQueueingDelay) {
+			this.expectedHops = expectedHops;
+			this.ringUtilisation = ringUtilisation;
+			this.ringQueueingDelay = ringQueueingDelay;
+			this.ringResponseTime = ringResponseTime;
+			this.printerUtilisation = printerUtilisation;
+			this.printerQueueingDelay = printerQueueingDelay;
+		}
+
+		public String toString() {
+			StringBuffer buf = new StringBuffer(160);
+			buf.append("hops = ").append(expectedHops);
+			buf.append(", ring utilisation = ").append(ringUtilisation);
+			buf.append(", ring queueing delay = ").append(ringQueueingDelay);
+			buf.append(", ring response time = ").append(ringResponseTime);
+			buf.append(", printer utilisation = ").append(printerUtilisation);
+			buf.append(", printer queueing delay = ").append(printerQueueingDelay);
+			return buf.toString();
+		}
+	}
+
+	private final int ringSize;
+	private final boolean dualRing;
+	/**
+	 * Hold the positions of the workstations and the printers on the token ring,
+	 * in ascending order.
+	 */
+	private final int[] workstations, printers;
+	/**
+	 * Holds the positions of the printers followed by the same positions plus
+	 * #ringSize, so that the printers following a position are a contiguous range.
+	 */
+	private final int[] unrolledPrinters;
+	/**
+	 * Holds at index i the sum of the first i elements of #unrolledPrinters.
+	 */
+	private final long[] unrolledSums;
+
+	/**
+	 * Construct a <em>TokenRingModel</em> for a token ring of #ringSize nodes with
+	 * workstations and printers at the given positions.
+	 * <p>
+	 * <strong>Precondition:</strong> (ringSize > 0) & (workstations.length > 0) &
+	 * (printers.length > 0); all positions are distinct and within the ring;
+	 * </p>
+	 */
+	public TokenRingModel(int ringSize, int[] workstations, int[] printers, boolean dualRing) {
+		assert (ringSize > 0) & (workstations.length > 0) & (printers.length > 0);
+		this.ringSize = ringSize;
+		this.dualRing = dualRing;
+		this.workstations = workstations.clone();
+		this.printers = printers.clone();
+		Arrays.sort(this.workstations);
+		Arrays.sort(this.printers);
+
+		int nrOfPrinters = this.printers.length;
+		unrolledPrinters = new int[2 * nrOfPrinters];
+		unrolledSums = new long[2 * nrOfPrinters + 1];
+		for (int i = 0; i < unrolledPrinters.length; i++) {
+			unrolledPrinters[i] = this.printers[i % nrOfPrinters] + ((i < nrOfPrinters) ? 0 : ringSize);
+			unrolledSums[i + 1] = unrolledSums[i] + unrolledPrinters[i];
+		}
+	}
+
+	/**
+	 * Answer a model of the token ring indexed by #index.
+	 */
+	static TokenRingModel of(RingIndex index, boolean dualRing) {
+		Node[] nodes = index.toArray();
+		int nrOfWorkstations = 0, nrOfPrinters = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i].kind_ == NodeKind.WORKSTATION) {
+				nrOfWorkstations++;
+			} else if (nodes[i].kind_ == NodeKind.PRINTER) {
+				nrOfPrinters++;
+			}
+		}
+		int[] workstations = new int[nrOfWorkstations];
+		int[] printers = new int[nrOfPrinters];
+		nrOfWorkstations = 0;
+		nrOfPrinters = 0;
+		for (int i = 0; i < nodes.length; i++) {
+			if (nodes[i].kind_ == NodeKind.WORKSTATION) {
+				workstations[nrOfWorkstations++] = i;
+			} else if (nodes[i].kind_ == NodeKind.PRINTER) {
+				printers[nrOfPrinters++] = i;
+			}
+		}
+		return new TokenRingModel(index.size(), workstations, printers, dualRing);
+	}
+
+	/**
+	 * Answer the number of nodes on the token ring.
+	 */
+	public int ringSize() {
+		return ringSize;
+	}
+
+	public int nrOfWorkstations() {
+		return workstations.length;
+	}
+
+	public int nrOfPrinters() {
+		return printers.length;
+	}
+
+	/**
+	 * Answer the number of hops of a print job sent from position #from to the
+	 * printer at position #to.
+	 * <p>
+	 * <strong>Precondition:</strong> from != to;
+	 * </p>
+	 */
+	public int printHops(int from, int to) {
+		assert from != to;
+		int forward = (to - from + ringSize) % ringSize;
+		if (dualRing && (forward > ringSize - forward)) {
+			return ringSize - forward;
+		}
+		return forward;
+	}
+
+	/**
+	 * Answer the expected number of hops of a print job, in closed form. Takes
+	 * O(W log P) time for W workstations and P printers.
+	 */
+	public double expectedPrintHops() {
+		int nrOfPrinters = printers.length;
+		long total = 0;
+		for (int i = 0; i < workstations.length; i++) {
+			int from = workstations[i];
+			// the printers following #from are unrolledPrinters[first .. first + nrOfPrinters - 1]
+			int first = upperBound(from, 0, unrolledPrinters.length);
+			int last = first + nrOfPrinters;
+			// those within half the ring are reached forward, the others backward on a dual ring
+			int split = dualRing ? upperBound(from + ringSize / 2, first, last) : last;
+			total += (unrolledSums[split] - unrolledSums[first]) - (long) (split - first) * from;
+			total += (long) (last - split) * (ringSize + from) - (unrolledSums[last] - unrolledSums[split]);
+		}
+		return (double) total / ((long) workstations.length * nrOfPrinters);
+	}
+
+	/**
+	 * Answer the expected number of hops of a request when #broadcastFraction of
+	 * the requests are broadcasts.
+	 */
+	public double expectedHops(double broadcastFraction) {
+		return (1.0 - broadcastFraction) * expectedPrintHops() + broadcastFraction * ringSize;
+	}
+
+	/**
+	 * Answer an estimate of expectedHops(broadcastFraction) from #samples
+	 * requests drawn at random, for checking the closed form.
+	 * <p>
+	 * <strong>Precondition:</strong> samples > 0;
+	 * </p>
+	 */
+	public double sampleExpectedHops(double broadcastFraction, int samples, long seed) {
+		assert samples > 0;
+		Random random = new Random(seed);
+		long total = 0;
+		for (int i = 0; i < samples; i++) {
+			if (random.nextDouble() < broadcastFraction) {
+				total += ringSize;
+			} else {
+				total += printHops(workstations[random.nextInt(workstations.length)],
+						printers[random.nextInt(printers.length)]);
+			}
+		}
+		return (double) total / samples;
+	}
+
+	/**
+	 * Answer what #receiver expects of the requests described by #mix.
+	 */
+	public Prediction predict(JobMix mix) {
+		double hops = expectedHops(mix.broadcastFraction);
+		double ringServiceTime = hops * mix.hopTime;
+		double ringUtilisation = mix.requestRate * ringServiceTime;
+		double ringDelay = queueingDelay(ringUtilisation, ringServiceTime);
+
+		double printRate = mix.requestRate * (1.0 - mix.broadcastFraction) / printers.length;
+		double printerUtilisation = printRate * mix.printTime;
+		double printerDelay = queueingDelay(printerUtilisation, mix.printTime);
+
+		return new Prediction(hops, ringUtilisation, ringDelay, ringDelay + ringServiceTime, printerUtilisation,
+				printerDelay);
+	}
+
+	/**
+	 * Answer the expected waiting time of an M/M/1 queue with #utilisation and
+	 * mean #serviceTime.
+	 */
+	private static double queueingDelay(double utilisation, double serviceTime) {
+		if (utilisation >= 1.0) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return utilisation * serviceTime / (1.0 - utilisation);
+	}
+
+	/**
+	 * Answer the first index in unrolledPrinters[from .. to - 1] holding a
+	 * position greater than #position, or #to when there is none.
+	 */
+	private int upperBound(int position, int from, int to) {
+		while (from < to) {
+			int middle = (from + to) >>> 1;
+			if (unrolledPrinters[middle] <= position) {
+				from = middle + 1;
+			} else {
+				to = middle;
+			}
+		}
+		return from;
+	}
+}
@@ -0,0 +1,147 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A <em>TopologyDiagnostics</em> reports the outcome of validating the token
+ * ring of a <em>Network</em>: every problem found, with the offending node.
+ *
+ * @see lanSimulation.Network#validateTopology()
+ */
+public class TopologyDiagnostics {
+	/**
+	 * The kinds of problems a token ring may have.
+	 */
+	public enum Problem {
+		/** The network has no first node. */
+		NO_FIRST_NODE,
+		/** No workstations are registered. */
+		NO_WORKSTATIONS,
+		/** The node has no next node. */
+		BROKEN_LINK,
+		/** The next node of the node is on the ring, but it is not the first node. */
+		NOT_CIRCULAR,
+		/** The node has the same name as a node earlier on the ring. */
+		DUPLICATE_NAME,
+		/** The node is a workstation on the ring, but it is not registered. */
+		UNREGISTERED_WORKSTATION,
+		/** The node is registered as a workstation, but it is not on the ring. */
+		MISSING_WORKSTATION,
+		/** The node is registered as a workstation, but it is not a workstation. */
+		NOT_A_WORKSTATION,
+		/** The ring holds no printer. */
+		NO_PRINTER
+	}
+
+	/**
+	 * A <em>Finding</em> holds a single problem and the node causing it.
+	 */
+	public static class Finding {
+		public final Problem problem;
+		/**
+		 * Holds the name of the offending node; null when the problem concerns the
+		 * ring as a whole.
+		 */
+		public final String node;
+		/**
+		 * Holds the position of the offending node on the ring, counted from the
+		 * first node, or -1 when the node is not on the ring.
+		 */
+		public final int position;
+		/**
+		 * Holds the position of a related node, e.g. the earlier node with the same
+		 * name or the node linked to, or -1 when there is none.
+		 */
+		public final int relatedPosition;
+
+		Finding(Problem problem, String node, int position, int relatedPosition) {
+			this.problem = problem;
+			this.node = node;
+			this.position = position;
+			this.relatedPosition = relatedPosition;
+		}
+
+		public String toString() {
+			StringBuffer buf = new StringBuffer(60);
+			buf.append(problem);
+			if (node != null) {
+				buf.append(" '").append(node).append("'");
+			}
+			if (position >= 0) {
+				buf.append(" at ").append(position);
+			}
+			if (relatedPosition >= 0) {
+				buf.append(" (see ").append(relatedPosition).append(")");
+			}
+			return buf.toString();
+		}
+	}
+
+	private final List<Finding> findings;
+	private final int ringSize;
+
+	TopologyDiagnostics(List<Finding> findings, int ringSize) {
+		this.findings = Collections.unmodifiableList(findings);
+		this.ringSize = ringSize;
+	}
+
+	/**
+	 * Answer whether no problems were found, i.e. whether the network is a
+	 * consistent token ring network.
+	 */
+	public boolean isConsistent() {
+		return findings.isEmpty();
+	}
+
+	/**
+	 * Answer the problems found, ordered by position on the ring; problems with
+	 * nodes that are not on the ring come last.
+	 */
+	public List<Finding> findings() {
+		return findings;
+	}
+
+	/**
+	 * Answer the number of distinct nodes reached from the first node.
+	 */
+	public int ringSize() {
+		return ringSize;
+	}
+
+	/**
+	 * Answer one line per problem found.
+	 */
+	public String toString() {
+		StringBuffer buf = new StringBuffer(40 * (findings.size() + 1));
+		buf.append("Token ring of ").append(ringSize).append(" nodes: ");
+		if (isConsistent()) {
+			buf.append("consistent");
+		} else {
+			buf.append(findings.size()).append((findings.size() == 1) ? " problem" : " problems");
+		}
+		for (int i = 0; i < findings.size(); i++) {
+			buf.append("\n\t").append(findings.get(i));
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,324 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import lanSimulation.TopologyDiagnostics.Finding;
+import lanSimulation.TopologyDiagnostics.Problem;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A <em>TopologyValidator</em> checks the token ring of a <em>Network</em> and
+ * reports every problem it finds, with the offending nodes. It is meant for
+ * large rings: the walk from the first node detects cycles in constant memory
+ * (Brent's algorithm), after which the nodes are checked in chunks on all
+ * cores. Registered workstations are numbered, and a bitset over these numbers
+ * records which of them were found on the ring.
+ * <p>
+ * Duplicate names are found without boxing a position per node: every chunk
+ * sorts its positions into stripes by the hash of their name, then every stripe
+ * merges the positions of all chunks, in order of the chunks, into a hash table
+ * of ints holding the first position of every name.
+ * </p>
+ */
+class TopologyValidator {
+	private static final int MIN_CHUNK = 4096;
+
+	private final Node firstNode;
+	private final Hashtable<?, ?> workstations;
+	private final List<Finding> findings;
+
+	/**
+	 * Holds the nodes reached from the first node, in order of travel.
+	 */
+	private Node[] ring;
+	/**
+	 * Holds the registered workstations; their position is their number.
+	 */
+	private Node[] registered;
+	/**
+	 * Maps the names of the registered workstations on their number.
+	 */
+	private HashMap<String, Integer> registeredIds;
+	/**
+	 * Hold per stripe the first position of every name hashed to the stripe, as
+	 * an open addressing hash table of (hash of the name, position plus one)
+	 * pairs; a position of 0 marks a free slot.
+	 */
+	private int[][] firstPositions;
+
+	TopologyValidator(Node firstNode, Hashtable<?, ?> workstations) {
+		this.firstNode = firstNode;
+		this.workstations = workstations;
+		this.findings = new ArrayList<Finding>();
+	}
+
+	TopologyDiagnostics validate() {
+		if (firstNode == null) {
+			findings.add(new Finding(Problem.NO_FIRST_NODE, null, -1, -1));
+			return new TopologyDiagnostics(findings, 0);
+		}
+		if (workstations.isEmpty()) {
+			findings.add(new Finding(Problem.NO_WORKSTATIONS, null, -1, -1));
+		}
+		collectRing();
+		numberRegistered();
+
+		int nrOfChunks = Math.max(1,
+				Math.min(ring.length / MIN_CHUNK, 4 * Runtime.getRuntime().availableProcessors()));
+		int nrOfStripes = nrOfChunks;
+		List<int[][]> stripedChunks = IntStream.range(0, nrOfChunks).parallel()
+				.mapToObj(chunk -> stripeChunk(chunk, nrOfChunks, nrOfStripes)).collect(Collectors.toList());
+		firstPositions = new int[nrOfStripes][];
+		IntStream.range(0, nrOfStripes).parallel().forEach(stripe -> mergeStripe(stripe, stripedChunks));
+		List<ChunkResult> chunks = IntStream.range(0, nrOfChunks).parallel()
+				.mapToObj(chunk -> checkChunk(chunk, nrOfChunks)).collect(Collectors.toList());
+
+		BitSet found = new BitSet(registered.length);
+		int printersFound = 0;
+		for (ChunkResult result : chunks) {
+			findings.addAll(result.findings);
+			found.or(result.found);
+			printersFound += result.printers;
+		}
+		if (printersFound == 0) {
+			findings.add(new Finding(Problem.NO_PRINTER, null, -1, -1));
+		}
+		checkRegistered(found);
+
+		Collections.sort(findings, (f1, f2) -> {
+			int p1 = (f1.position < 0) ? Integer.MAX_VALUE : f1.position;
+			int p2 = (f2.position < 0) ? Integer.MAX_VALUE : f2.position;
+			return Integer.compare(p1, p2);
+		});
+		return new TopologyDiagnostics(findings, ring.length);
+	}
+
+	/**
+	 * Walk the ring from the first node, using Brent's cycle detection to find
+	 * where the walk starts repeating, then collect the distinct nodes reached.
+	 * Reports a node without next node, or a node linking back to a node other
+	 * than the first node.
+	 */
+	private void collectRing() {
+		int power = 1, cycleLength = 1;
+		Node tortoise = firstNode;
+		Node hare = firstNode.nextNode_;
+		while ((hare != null) && (tortoise != hare)) {
+			if (power == cycleLength) {
+				tortoise = hare;
+				power *= 2;
+				cycleLength = 0;
+			}
+			hare = hare.nextNode_;
+			cycleLength++;
+		}
+
+		int size;
+		int cycleStart = 0;
+		if (hare == null) {
+			size = 0;
+			for (Node node = firstNode; node != null; node = node.nextNode_) {
+				size++;
+			}
+		} else {
+			tortoise = firstNode;
+			hare = firstNode;
+			for (int i = 0; i < cycleLength; i++) {
+				hare = hare.nextNode_;
+			}
+			while (tortoise != hare) {
+				tortoise = tortoise.nextNode_;
+				hare = hare.nextNode_;
+				cycleStart++;
+			}
+			size = cycleStart + cycleLength;
+		}
+
+		ring = new Node[size];
+		Node node = firstNode;
+		for (int i = 0; i < size; i++) {
+			ring[i] = node;
+			node = node.nextNode_;
+		}
+		if (hare == null) {
+			findings.add(new Finding(Problem.BROKEN_LINK, ring[size - 1].name_, size - 1, -1));
+		} else if (cycleStart != 0) {
+			findings.add(new Finding(Problem.NOT_CIRCULAR, ring[size - 1].name_, size - 1, cycleStart));
+		}
+	}
+
+	private void numberRegistered() {
+		registered = new Node[workstations.size()];
+		registeredIds = new HashMap<String, Integer>(workstations.size() * 4 / 3 + 1);
+		Enumeration<?> iter = workstations.elements();
+		for (int i = 0; iter.hasMoreElements(); i++) {
+			registered[i] = (Node) iter.nextElement();
+			registeredIds.put(registered[i].name_, Integer.valueOf(i));
+		}
+	}
+
+	/**
+	 * Answer the positions of chunk #chunk of the ring, sorted into #nrOfStripes
+	 * stripes by the hash of their name; the positions in a stripe are ascending.
+	 */
+	private int[][] stripeChunk(int chunk, int nrOfChunks, int nrOfStripes) {
+		int start = chunkEnd(chunk - 1, nrOfChunks), end = chunkEnd(chunk, nrOfChunks);
+		int[] sizes = new int[nrOfStripes];
+		for (int i = start; i < end; i++) {
+			sizes[stripeOf(ring[i].name_, nrOfStripes)]++;
+		}
+		int[][] stripes = new int[nrOfStripes][];
+		for (int stripe = 0; stripe < nrOfStripes; stripe++) {
+			stripes[stripe] = new int[sizes[stripe]];
+			sizes[stripe] = 0;
+		}
+		for (int i = start; i < end; i++) {
+			int stripe = stripeOf(ring[i].name_, nrOfStripes);
+			stripes[stripe][sizes[stripe]++] = i;
+		}
+		return stripes;
+	}
+
+	/**
+	 * Build the table of first positions of stripe #stripe from the positions of
+	 * all chunks, taken in order of the ring so that the first position of a name
+	 * is the one kept.
+	 */
+	private void mergeStripe(int stripe, List<int[][]> stripedChunks) {
+		int size = 0;
+		for (int[][] chunk : stripedChunks) {
+			size += chunk[stripe].length;
+		}
+		int[] table = new int[Integer.highestOneBit(Math.max(1, size) * 2) * 4];
+		for (int[][] chunk : stripedChunks) {
+			int[] positions = chunk[stripe];
+			for (int i = 0; i < positions.length; i++) {
+				String name = ring[positions[i]].name_;
+				int slot = slotOf(table, name);
+				if (table[slot + 1] == 0) {
+					table[slot] = name.hashCode();
+					table[slot + 1] = positions[i] + 1;
+				}
+			}
+		}
+		firstPositions[stripe] = table;
+	}
+
+	/**
+	 * Answer the first position of a node named #name on the ring, or -1 when no
+	 * such node is on the ring.
+	 */
+	private int firstPosition(String name) {
+		int[] table = firstPositions[stripeOf(name, firstPositions.length)];
+		return table[slotOf(table, name) + 1] - 1;
+	}
+
+	/**
+	 * Answer the index in #table of the pair holding #name, or of the free pair
+	 * where it belongs.
+	 */
+	private int slotOf(int[] table, String name) {
+		int mask = table.length - 2;
+		int hash = name.hashCode();
+		int slot = ((hash ^ (hash >>> 16)) << 1) & mask;
+		while ((table[slot + 1] != 0)
+				&& ((table[slot] != hash) || !ring[table[slot + 1] - 1].name_.equals(name))) {
+			slot = (slot + 2) & mask;
+		}
+		return slot;
+	}
+
+	private static int stripeOf(String name, int nrOfStripes) {
+		return ((name.hashCode() * 0x9E3779B9) >>> 1) % nrOfStripes;
+	}
+
+	/**
+	 * The results of checking one chunk of the ring.
+	 */
+	private static class ChunkResult {
+		final List<Finding> findings = new ArrayList<Finding>();
+		final BitSet found;
+		int printers = 0;
+
+		ChunkResult(int nrOfRegistered) {
+			found = new BitSet(nrOfRegistered);
+		}
+	}
+
+	private ChunkResult checkChunk(int chunk, int nrOfChunks) {
+		ChunkResult result = new ChunkResult(registered.length);
+		int end = chunkEnd(chunk, nrOfChunks);
+		for (int i = chunkEnd(chunk - 1, nrOfChunks); i < end; i++) {
+			Node node = ring[i];
+			int first = firstPosition(node.name_);
+			if (first != i) {
+				result.findings.add(new Finding(Problem.DUPLICATE_NAME, node.name_, i, first));
+			}
+			switch (node.kind_) {
+			case WORKSTATION:
+				Integer id = registeredIds.get(node.name_);
+				if ((id == null) || (registered[id.intValue()] != node)) {
+					result.findings.add(new Finding(Problem.UNREGISTERED_WORKSTATION, node.name_, i, -1));
+				} else {
+					result.found.set(id.intValue());
+				}
+				break;
+			case PRINTER:
+				result.printers++;
+				break;
+			default:
+			}
+		}
+		return result;
+	}
+
+	private void checkRegistered(BitSet found) {
+		for (int id = 0; id < registered.length; id++) {
+			Node node = registered[id];
+			if (node.kind_ != NodeKind.WORKSTATION) {
+				int position = firstPosition(node.name_);
+				int at = -1;
+				if ((position >= 0) && (ring[position] == node)) {
+					at = position;
+				}
+				findings.add(new Finding(Problem.NOT_A_WORKSTATION, node.name_, at, -1));
+			} else if (!found.get(id)) {
+				findings.add(new Finding(Problem.MISSING_WORKSTATION, node.name_, -1, -1));
+			}
+		}
+	}
+
+	/**
+	 * Answer the position following the last node of chunk #chunk, or 0 for
+	 * chunk -1.
+	 */
+	private int chunkEnd(int chunk, int nrOfChunks) {
+		return (int) ((long) ring.length * (chunk + 1) / nrOfChunks);
+	}
+}
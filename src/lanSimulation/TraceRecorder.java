@@ -0,0 +1,188 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.io.*;
+
+/**
+ * A <em>TraceRecorder</em> writes every request handled by a <em>Network</em>
+ * and every change of its topology on an append-only binary trace, which can be
+ * replayed later by a <em>TraceReplayer</em>.
+ * <p>
+ * The trace starts with #MAGIC and #VERSION, followed by records consisting of
+ * a record type, a timestamp in nanoseconds since the recorder was created and
+ * the record specific fields. Nodes are stored as the ordinal of their
+ * <em>NodeKind</em> followed by their name. A topology record holds the whole
+ * ring, while nodes inserted and removed on a running network are recorded one
+ * by one (since version 2 of the trace). Like a <em>PrintStream</em>, a recorder never
+ * throws an <em>IOException</em>; use checkError() instead.
+ * </p>
+ *
+ * @see lanSimulation.Network#setTraceRecorder(TraceRecorder)
+ */
+public class TraceRecorder {
+	static final int MAGIC = 0x4C414E54; // "LANT"
+	static final int VERSION = 2;
+
+	static final byte TOPOLOGY = 1;
+	static final byte PRINT = 2;
+	static final byte BROADCAST = 3;
+	static final byte PRINTER_GROUP = 4;
+	static final byte DUAL_RING = 5;
+	static final byte INSERT = 6;
+	static final byte REMOVE = 7;
+
+	private final DataOutputStream out;
+	private final long startTime;
+	private boolean error;
+
+	/**
+	 * Construct a <em>TraceRecorder</em> appending its records on #out.
+	 */
+	public TraceRecorder(OutputStream out) {
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.startTime = System.nanoTime();
+		this.error = false;
+		try {
+			this.out.writeInt(MAGIC);
+			this.out.writeInt(VERSION);
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	/**
+	 * Answer whether writing some record failed.
+	 */
+	public synchronized boolean checkError() {
+		flush();
+		return error;
+	}
+
+	/**
+	 * Write all buffered records on the underlying stream.
+	 */
+	public synchronized void flush() {
+		try {
+			out.flush();
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	/**
+	 * Flush and close the underlying stream.
+	 */
+	public synchronized void close() {
+		try {
+			out.close();
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	synchronized void recordTopology(Node[] nodes) {
+		try {
+			startRecord(TOPOLOGY);
+			out.writeInt(nodes.length);
+			for (int i = 0; i < nodes.length; i++) {
+				out.writeByte(nodes[i].kind_.ordinal());
+				writeString(nodes[i].name_);
+			}
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	synchronized void recordInsert(String predecessor, Node node) {
+		try {
+			startRecord(INSERT);
+			writeString(predecessor);
+			out.writeByte(node.kind_.ordinal());
+			writeString(node.name_);
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	synchronized void recordRemove(String name) {
+		try {
+			startRecord(REMOVE);
+			writeString(name);
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	synchronized void recordPrinterGroup(String group, String[] printers) {
+		try {
+			startRecord(PRINTER_GROUP);
+			writeString(group);
+			out.writeInt(printers.length);
+			for (int i = 0; i < printers.length; i++) {
+				writeString(printers[i]);
+			}
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	synchronized void recordDualRing(boolean dualRing) {
+		try {
+			startRecord(DUAL_RING);
+			out.writeBoolean(dualRing);
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	synchronized void recordPrint(String workstation, String document, String printer, boolean result) {
+		try {
+			startRecord(PRINT);
+			writeString(workstation);
+			writeString(document);
+			writeString(printer);
+			out.writeBoolean(result);
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	synchronized void recordBroadcast(boolean result) {
+		try {
+			startRecord(BROADCAST);
+			out.writeBoolean(result);
+		} catch (IOException exc) {
+			error = true;
+		}
+	}
+
+	private void startRecord(byte type) throws IOException {
+		out.writeByte(type);
+		out.writeLong(System.nanoTime() - startTime);
+	}
+
+	private void writeString(String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,189 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation;
+
+import lanSimulation.internals.*;
+import java.io.*;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+/**
+ * A <em>TraceReplayer</em> streams a trace written by a <em>TraceRecorder</em>
+ * back through a <em>Network</em>, rebuilding the network on every recorded
+ * topology, inserting and removing the recorded nodes, and verifying that every request yields the recorded result.
+ */
+public class TraceReplayer {
+	private final DataInputStream in;
+	private Network network;
+	private final Hashtable printerGroups;
+	private boolean dualRing;
+	private int requests;
+	private int mismatches;
+
+	/**
+	 * Construct a <em>TraceReplayer</em> reading a trace from #in.
+	 */
+	public TraceReplayer(InputStream in) {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		this.network = null;
+		this.printerGroups = new Hashtable();
+		this.dualRing = false;
+		this.requests = 0;
+		this.mismatches = 0;
+	}
+
+	/**
+	 * Replay the whole trace, writing the report of every request on #report.
+	 * The delays between records are multiplied by #timeScale: 1.0 replays in
+	 * real time, 0.01 a hundred times faster and 0.0 as fast as possible.
+	 * <p>
+	 * <strong>Precondition:</strong> timeScale >= 0.0;
+	 * </p>
+	 *
+	 * @return Answer #true when every request yielded the recorded result.
+	 * @throws IOException when the trace cannot be read or is not a trace.
+	 */
+	public boolean replay(Writer report, double timeScale) throws IOException {
+		assert timeScale >= 0.0;
+		if (in.readInt() != TraceRecorder.MAGIC) {
+			throw new IOException("Not a LAN simulation trace");
+		}
+		int version = in.readInt();
+		if ((version < 1) || (version > TraceRecorder.VERSION)) {
+			throw new IOException("Unsupported trace version " + version);
+		}
+
+		long startTime = System.nanoTime();
+		int type;
+		while ((type = in.read()) >= 0) {
+			long timestamp = in.readLong();
+			if (timeScale > 0.0) {
+				waitUntil(startTime + (long) (timestamp * timeScale));
+			}
+			switch (type) {
+			case TraceRecorder.TOPOLOGY:
+				replayTopology();
+				break;
+			case TraceRecorder.INSERT:
+				String predecessor = readString();
+				NodeKind kind = NodeKind.values()[in.readUnsignedByte()];
+				network.insertNodeAfter(predecessor, kind.newNode(readString()));
+				break;
+			case TraceRecorder.REMOVE:
+				network.removeNode(readString());
+				break;
+			case TraceRecorder.PRINTER_GROUP:
+				replayPrinterGroup();
+				break;
+			case TraceRecorder.DUAL_RING:
+				dualRing = in.readBoolean();
+				network.setDualRing(dualRing);
+				break;
+			case TraceRecorder.PRINT:
+				String workstation = readString();
+				String document = readString();
+				String printer = readString();
+				verify(network.requestWorkstationPrintsDocument(workstation, document, printer, report),
+						in.readBoolean());
+				break;
+			case TraceRecorder.BROADCAST:
+				verify(network.requestBroadcast(report), in.readBoolean());
+				break;
+			default:
+				throw new IOException("Unknown trace record type " + type);
+			}
+		}
+		return mismatches == 0;
+	}
+
+	/**
+	 * Answer the network as it was after the last replayed record.
+	 */
+	public Network network() {
+		return network;
+	}
+
+	/**
+	 * Answer the number of requests replayed so far.
+	 */
+	public int requests() {
+		return requests;
+	}
+
+	/**
+	 * Answer the number of replayed requests whose result differed from the trace.
+	 */
+	public int mismatches() {
+		return mismatches;
+	}
+
+	private void replayTopology() throws IOException {
+		Node[] nodes = new Node[in.readInt()];
+		for (int i = 0; i < nodes.length; i++) {
+			NodeKind kind = NodeKind.values()[in.readUnsignedByte()];
+			nodes[i] = kind.newNode(readString());
+		}
+
+		network = Network.ringOf(nodes);
+		Enumeration groups = printerGroups.keys();
+		while (groups.hasMoreElements()) {
+			String group = (String) groups.nextElement();
+			network.definePrinterGroup(group, (String[]) printerGroups.get(group));
+		}
+		if (dualRing) {
+			network.setDualRing(true);
+		}
+	}
+
+	private void replayPrinterGroup() throws IOException {
+		String group = readString();
+		String[] printers = new String[in.readInt()];
+		for (int i = 0; i < printers.length; i++) {
+			printers[i] = readString();
+		}
+		printerGroups.put(group, printers);
+		network.definePrinterGroup(group, printers);
+	}
+
+	private void verify(boolean result, boolean recorded) {
+		requests++;
+		if (result != recorded) {
+			mismatches++;
+		}
+	}
+
+	private String readString() throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void waitUntil(long deadline) throws InterruptedIOException {
+		long delay;
+		while ((delay = deadline - System.nanoTime()) > 0) {
+			try {
+				Thread.sleep(delay / 1000000, (int) (delay % 1000000));
+			} catch (InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Replay interrupted");
+			}
+		}
+	}
+}
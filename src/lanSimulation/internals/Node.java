@@ -33,12 +33,25 @@ public class Node {
 	 * Holds the name of the Node.
 	 */
 	public String name_;
+	/**
+	 * Holds the kind of the Node.
+	 */
+	public final NodeKind kind_;
 	/**
 	 * Holds the next Node in the token ring architecture.
 	 * 
 	 * @see lanSimulation.internals.Node
 	 */
 	public Node nextNode_;
+	/**
+	 * Holds the previous Node in the token ring architecture. Kept up to date
+	 * whenever the network builds a snapshot of its ring and when nodes are
+	 * inserted or removed. Packets travelling backward on a dual ring are routed
+	 * by their position in the snapshot, not through this link.
+	 * 
+	 * @see lanSimulation.Network#setDualRing(boolean)
+	 */
+	public Node prevNode_;
 
 	/**
 	 * Construct a <em>Node</em> with given #type and #name.
@@ -47,8 +60,7 @@ public class Node {
 	 * </p>
 	 */
 	public Node(String name) {
-		name_ = name;
-		nextNode_ = null;
+		this(name, null, NodeKind.NODE);
 	}
 
 	/**
@@ -59,13 +71,26 @@ public class Node {
 	 * </p>
 	 */
 	public Node(String name, Node nextNode) {
+		this(name, nextNode, NodeKind.NODE);
+	}
+
+	/**
+	 * Construct a <em>Node</em> of given #kind with given #name, and which is
+	 * linked to #nextNode. Used by subclasses to declare their kind.
+	 */
+	protected Node(String name, Node nextNode, NodeKind kind) {
 		name_ = name;
 		nextNode_ = nextNode;
+		prevNode_ = null;
+		kind_ = kind;
 	}
 
 	public void logging(Writer report, Packet packet) {
+		if (!packet.traced) {
+			return;
+		}
 		try {
-			if(packet.message.equals("BROADCAST")) {
+			if(packet.kind == PacketKind.BROADCAST) {
 				report.write("\tNode '");
 				report.write(name_);
 				report.write("' accepts broadcase packet.\n");
@@ -79,6 +104,23 @@ public class Node {
 		}
 	}
 	
+	/**
+	 * Write on #report that this node accepts a multicast packet addressed to one
+	 * of its groups.
+	 */
+	public void acceptMulticast(Writer report, Packet packet) {
+		if (!packet.traced) {
+			return;
+		}
+		try {
+			report.write("\tNode '");
+			report.write(name_);
+			report.write("' accepts multicast packet.\n");
+		} catch (IOException exc) {
+			
+		}
+	}
+
 	public void printOn(StringBuffer buf) {
 			buf.append("Node ");
 			buf.append(name_);
@@ -0,0 +1,49 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+/**
+ * A <em>NodeKind</em> tells which kind of <em>Node</em> sits on the token ring.
+ * The hop and accounting paths dispatch on the kind instead of testing the class
+ * of a node. The ordinals are stored in traces, hence new kinds are added at the
+ * end.
+ */
+public enum NodeKind {
+	NODE {
+		public Node newNode(String name) {
+			return new Node(name);
+		}
+	},
+	WORKSTATION {
+		public Node newNode(String name) {
+			return new Workstation(name);
+		}
+	},
+	PRINTER {
+		public Node newNode(String name) {
+			return new Printer(name);
+		}
+	};
+
+	/**
+	 * Construct a <em>Node</em> of this kind with given #name.
+	 */
+	public abstract Node newNode(String name);
+}
@@ -20,6 +20,7 @@
 package lanSimulation.internals;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.io.Writer;
 
 import lanSimulation.Network;
@@ -41,47 +42,70 @@ public class Packet {
 	 * Holds the name of the Node which should receive the information.
 	 */
 	public String destination;
+	/**
+	 * Holds how the nodes on the token ring treat the packet.
+	 */
+	public PacketKind kind;
+	/**
+	 * Holds whether the nodes on the token ring write the passing of the packet on
+	 * the report. When #false, the nodes write nothing at all.
+	 */
+	public boolean traced;
+	/**
+	 * Hold the positions of the author and the title in the #message, or
+	 * #NOT_FOUND when the document does not specify them. Only valid once the
+	 * document has been printed.
+	 */
+	private int authorStart, authorEnd, titleStart, titleEnd;
+
+	private static final int NOT_FOUND = -1;
 
 	/**
 	 * Construct a <em>Packet</em> with given #message and #destination.
 	 */
 	public Packet(String message, String destination) {
-		this.message = message;
-		this.origin = "";
-		this.destination = destination;
+		this(message, "", destination);
 	}
 
 	/**
-	 * Construct a <em>Packet</em> with given #message, #origin and #receiver.
+	 * Construct a <em>Packet</em> with given #message, #origin and #receiver. A
+	 * packet with message "BROADCAST" is a broadcast packet.
 	 */
 	public Packet(String message, String origin, String destination) {
+		this(message.equals("BROADCAST") ? PacketKind.BROADCAST : PacketKind.UNICAST, message, origin, destination);
+	}
+
+	/**
+	 * Construct a <em>Packet</em> of given #kind with given #message, #origin and
+	 * #receiver.
+	 */
+	public Packet(PacketKind kind, String message, String origin, String destination) {
+		reset(kind, message, origin, destination);
+	}
+
+	/**
+	 * Reinitialize #receiver as a packet of given #kind with given #message,
+	 * #origin and #receiver, so that it may be reused for another request.
+	 * 
+	 * @see lanSimulation.internals.PacketPool
+	 */
+	public void reset(PacketKind kind, String message, String origin, String destination) {
+		this.kind = kind;
 		this.message = message;
 		this.origin = origin;
 		this.destination = destination;
+		this.traced = true;
+		this.authorStart = NOT_FOUND;
+		this.authorEnd = NOT_FOUND;
+		this.titleStart = NOT_FOUND;
+		this.titleEnd = NOT_FOUND;
 	}
 
 	public boolean printDocument(Node printer, Network network, Writer report) {
-		String author = "Unknown";
-		String title = "Untitled";
-		int startPos = 0, endPos = 0;
-	
-		if (printer instanceof Printer) {
+		if (printer.kind_ == NodeKind.PRINTER) {
 			try {
-				if (message.startsWith("!PS")) {
-					
-					author = generateText(author);
-					title = generateText(title);
-					
-					network.accountingDocument(report, author, title);
-				} else {
-					title = "ASCII DOCUMENT";
-					if (message.length() >= 16) {
-						author = message.substring(8, 16);
-					}
-					
-					network.accountingDocument(report, author, title);
-				}
-				
+				parseDocument();
+				network.accountingDocument(report, this);
 			} catch (IOException exc) {
 				
 			}
@@ -99,30 +123,114 @@ public class Packet {
 		}
 	}
 
-	private String generateText(String typeMessage) {
-		int startPos = 0;
-		int endPos = 0;
-		String message;
-		int num = 0;
-		
-		if(typeMessage.equals("Unknown")) {
-			message = "author:";
-			num = 7;
-		}else {
-			message = "title:";
-			num = 6;
+	/**
+	 * Answer whether #receiver holds a postscript document.
+	 */
+	public boolean isPostscript() {
+		return message.startsWith("!PS");
+	}
+
+	/**
+	 * Write the author of the document held by #receiver on #report, without
+	 * copying it out of the #message.
+	 * <p>
+	 * <strong>Precondition:</strong> the document has been printed;
+	 * </p>
+	 */
+	public void writeAuthorOn(Writer report) throws IOException {
+		if (authorStart == NOT_FOUND) {
+			report.write("Unknown");
+		} else {
+			report.write(message, authorStart, authorEnd - authorStart);
 		}
-		
-		startPos = message.indexOf(message);
-		if (startPos >= 0) {
-			endPos = message.indexOf(".", startPos + num);
-			if (endPos < 0) {
-				endPos = message.length();
-			}
+	}
+
+	/**
+	 * Write the title of the document held by #receiver on #report, without
+	 * copying it out of the #message.
+	 * <p>
+	 * <strong>Precondition:</strong> the document has been printed;
+	 * </p>
+	 */
+	public void writeTitleOn(Writer report) throws IOException {
+		if (titleStart != NOT_FOUND) {
+			report.write(message, titleStart, titleEnd - titleStart);
+		} else if (isPostscript()) {
+			report.write("Untitled");
+		} else {
+			report.write("ASCII DOCUMENT");
+		}
+	}
+
+	/**
+	 * Answer the author of the document held by #receiver.
+	 * <p>
+	 * <strong>Precondition:</strong> the document has been printed;
+	 * </p>
+	 */
+	public String author() {
+		StringWriter author = new StringWriter(16);
+		try {
+			writeAuthorOn(author);
+		} catch (IOException exc) {
+			
+		}
+		return author.toString();
+	}
+
+	/**
+	 * Answer the title of the document held by #receiver.
+	 * <p>
+	 * <strong>Precondition:</strong> the document has been printed;
+	 * </p>
+	 */
+	public String title() {
+		StringWriter title = new StringWriter(16);
+		try {
+			writeTitleOn(title);
+		} catch (IOException exc) {
 			
-			typeMessage = message.substring(startPos + num, endPos);
 		}
-		return typeMessage;
+		return title.toString();
+	}
+
+	/**
+	 * Locate the author and the title in the #message. For an ASCII document,
+	 * the author is held by characters 8 to 16; for a postscript document the
+	 * author and title follow the keywords "author:" and "title:", up to the
+	 * next ".".
+	 */
+	private void parseDocument() {
+		if (isPostscript()) {
+			authorStart = fieldStart("author:");
+			authorEnd = fieldEnd(authorStart);
+			titleStart = fieldStart("title:");
+			titleEnd = fieldEnd(titleStart);
+		} else {
+			if (message.length() >= 16) {
+				authorStart = 8;
+				authorEnd = 16;
+			}
+		}
+	}
+
+	private int fieldStart(String keyword) {
+		int startPos = message.indexOf(keyword);
+		if (startPos < 0) {
+			return NOT_FOUND;
+		}
+		return startPos + keyword.length();
+	}
+
+	private int fieldEnd(int startPos) {
+		if (startPos == NOT_FOUND) {
+			return NOT_FOUND;
+		}
+		int endPos = message.indexOf('.', startPos);
+		if (endPos < 0) {
+			endPos = message.length();
+		}
+		return endPos;
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc. 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.internals;
+
+/**
+ * A <em>PacketPool</em> holds packets that are no longer in use, so that
+ * handling a request reuses a packet instead of allocating a new one.
+ */
+public class PacketPool {
+	/**
+	 * Holds the packets available for reuse; only the first #size are valid.
+	 */
+	private final Packet[] free;
+	private int size;
+
+	/**
+	 * Construct a <em>PacketPool</em> holding at most #capacity unused packets.
+	 * <p>
+	 * <strong>Precondition:</strong> capacity > 0;
+	 * </p>
+	 */
+	public PacketPool(int capacity) {
+		assert capacity > 0;
+		free = new Packet[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Answer a packet of given #kind with given #message, #origin and
+	 * #destination, reusing a released packet when one is available.
+	 */
+	public synchronized Packet acquire(PacketKind kind, String message, String origin, String destination) {
+		if (size == 0) {
+			return new Packet(kind, message, origin, destination);
+		}
+		Packet packet = free[--size];
+		free[size] = null;
+		packet.reset(kind, message, origin, destination);
+		return packet;
+	}
+
+	/**
+	 * Return #packet to #receiver. The caller may no longer use #packet.
+	 */
+	public synchronized void release(Packet packet) {
+		if (size < free.length) {
+			packet.reset(PacketKind.UNICAST, null, null, null);
+			free[size++] = packet;
+		}
+	}
+}
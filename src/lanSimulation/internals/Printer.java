@@ -1,15 +1,42 @@
 package lanSimulation.internals;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Printer extends Node {
+	/**
+	 * Holds the number of print jobs currently sent to this printer, directly or
+	 * through a printer group.
+	 */
+	private final AtomicInteger queueDepth = new AtomicInteger();
 
 	public Printer(String name, Node nextNode) {
-		super(name, nextNode);
-		// TODO Auto-generated constructor stub
+		super(name, nextNode, NodeKind.PRINTER);
 	}
 	
 	public Printer(String name) {
-		super(name);
-		// TODO Auto-generated constructor stub
+		super(name, null, NodeKind.PRINTER);
+	}
+
+	/**
+	 * Answer the number of print jobs currently sent to this printer and not yet
+	 * handled.
+	 */
+	public int queueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * Register that a print job has been sent to this printer.
+	 */
+	public void jobQueued() {
+		queueDepth.incrementAndGet();
+	}
+
+	/**
+	 * Register that a print job sent to this printer has been handled.
+	 */
+	public void jobDone() {
+		queueDepth.decrementAndGet();
 	}
 
 	@Override
@@ -3,13 +3,11 @@ package lanSimulation.internals;
 public class Workstation extends Node {
 
 	public Workstation(String name, Node nextNode) {
-		super(name, nextNode);
-		// TODO Auto-generated constructor stub
+		super(name, nextNode, NodeKind.WORKSTATION);
 	}
 	
 	public Workstation(String name) {
-		super(name);
-		// TODO Auto-generated constructor stub
+		super(name, null, NodeKind.WORKSTATION);
 	}
 
 	@Override
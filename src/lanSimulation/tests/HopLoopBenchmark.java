@@ -0,0 +1,110 @@
+/*   This file is part of lanSimulation.
+ *
+ *   lanSimulation is free software; you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation; either version 2 of the License, or
+ *   (at your option) any later version.
+ *
+ *   lanSimulation is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with lanSimulation; if not, write to the Free Software
+ *   Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ *   Copyright original Java version: 2004 Bart Du Bois, Serge Demeyer
+ *   Copyright C++ version: 2006 Matthias Rieger, Bart Van Rompaey
+ */
+package lanSimulation.tests;
+
+import lanSimulation.internals.*;
+import lanSimulation.*;
+import java.io.*;
+
+/**
+ * Measures the time spent per hop when packets travel a large token ring. Run
+ * without assertions enabled, as in production:
+ *
+ * <pre>
+ java -cp built lanSimulation.tests.HopLoopBenchmark [nrOfNodes] [nrOfRounds]
+ * </pre>
+ */
+public class HopLoopBenchmark {
+
+	/**
+	 * A <em>Writer</em> discarding everything, so the benchmark measures the hop
+	 * loop rather than the growth of a report.
+	 */
+	static class NullWriter extends Writer {
+		public void write(char[] cbuf, int off, int len) {
+		}
+
+		public void write(String str) {
+		}
+
+		public void flush() {
+		}
+
+		public void close() {
+		}
+	}
+
+	/**
+	 * Return a network of #size nodes in which every 10th node is a workstation
+	 * and the last node is a printer.
+	 */
+	public static Network largeNetwork(int size) {
+		Node[] nodes = new Node[size];
+		for (int i = 0; i < size - 1; i++) {
+			if (i % 10 == 0) {
+				nodes[i] = new Workstation("ws" + i);
+			} else {
+				nodes[i] = new Node("n" + i);
+			}
+		}
+		nodes[size - 1] = new Printer("printer");
+		return Network.ringOf(nodes);
+	}
+
+	public static void main(String args[]) {
+		int size = 100000;
+		int rounds = 20;
+		if (args.length > 0) {
+			size = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			rounds = Integer.parseInt(args[1]);
+		}
+
+		Network network = largeNetwork(size);
+		Writer report = new NullWriter();
+		for (int i = 0; i < rounds; i++) {
+			run(network, size, report); // warm up
+		}
+
+		long start = System.nanoTime();
+		long hops = 0;
+		for (int i = 0; i < rounds; i++) {
+			hops += run(network, size, report);
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.print("hops: ");
+		System.out.print(hops);
+		System.out.print(", ns/hop: ");
+		System.out.println((double) elapsed / hops);
+	}
+
+	/**
+	 * Send a broadcast, a print job for the printer and a print job for an
+	 * unknown printer across #network and answer the number of hops travelled.
+	 */
+	private static long run(Network network, int size, Writer report) {
+		network.requestBroadcast(report);
+		network.requestWorkstationPrintsDocument("ws0", "Hello World", "printer", report);
+		network.requestWorkstationPrintsDocument("ws0", "Hello World", "UnknownPrinter", report);
+		return 3L * size - 1;
+	}
+}
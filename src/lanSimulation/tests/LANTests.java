@@ -25,6 +25,10 @@ import junit.framework.*;
 import junit.extensions.*;
 import java.lang.AssertionError;
 import java.io.*;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class LANTests extends TestCase {
 
@@ -42,6 +46,8 @@ public class LANTests extends TestCase {
 		assertEquals("origin_", packet.origin, "");
 		packet.origin = "o";
 		assertEquals("origin_ (after setting)", packet.origin, "o");
+		assertEquals("kind", packet.kind, PacketKind.UNICAST);
+		assertEquals("kind (broadcast)", new Packet("BROADCAST", "a").kind, PacketKind.BROADCAST);
 	}
 
 	private boolean compareFiles(String filename1, String filename2) {
@@ -106,6 +112,9 @@ public class LANTests extends TestCase {
 		assertEquals("nextNode_", node.nextNode_, null);
 		node.nextNode_ = node;
 		assertEquals("nextNode_ (after setting)", node.nextNode_, node);
+		assertEquals("kind_", node.kind_, NodeKind.NODE);
+		assertEquals("kind_ (workstation)", new Workstation("w").kind_, NodeKind.WORKSTATION);
+		assertEquals("kind_ (printer)", NodeKind.PRINTER.newNode("p").kind_, NodeKind.PRINTER);
 	}
 
 	public void testDefaultNetworkToString() {
@@ -117,6 +126,216 @@ public class LANTests extends TestCase {
 				"Workstation Filip [Workstation] -> Node n1 [Node] -> Workstation Hans [Workstation] -> Printer Andy [Printer] ->  ... ");
 	}
 
+	public void testRenderingCache() {
+		Network network = Network.defaultExample();
+		String ascii = network.toString();
+
+		assertSame("cached toString()", network.toString(), ascii);
+		network.topologyChanged();
+		assertNotSame("toString() after topologyChanged()", network.toString(), ascii);
+		assertEquals("toString() after topologyChanged()", network.toString(), ascii);
+
+		StringBuffer buf = new StringBuffer(500);
+		network.printXMLOn(buf);
+		buf.setLength(0);
+		network.printXMLOn(buf);
+		assertEquals("cached printXMLOn()", buf.toString(),
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n\n<network>\n\t<workstation>Filip</workstation>"
+						+ "\n\t<node>n1</node>\n\t<workstation>Hans</workstation>\n\t<printer>Andy</printer>\n</network>");
+	}
+
+	public void testRingIteration() {
+		Network network = Network.defaultExample();
+		StringBuffer names = new StringBuffer(50);
+
+		for (Node node : network) {
+			names.append(node.name_).append(' ');
+		}
+		assertEquals("iteration order", names.toString(), "Filip n1 Hans Andy ");
+		assertEquals("nrOfNodes", network.stream().count(), 4);
+		assertEquals("first printer", network.stream().filter(node -> node.kind_ == NodeKind.PRINTER).findFirst()
+				.get().name_, "Andy");
+
+		network = HopLoopBenchmark.largeNetwork(100000);
+		assertEquals("nrOfWorkstations (parallel)",
+				network.parallelStream().filter(node -> node.kind_ == NodeKind.WORKSTATION).count(), 10000);
+		network.setDualRing(true);
+		assertEquals("nrOfNodes (sized, parallel)", network.parallelStream().count(), 100000);
+		assertEquals("estimateSize", network.spliterator().estimateSize(), 100000);
+		Spliterator<Node> second = network.spliterator();
+		Spliterator<Node> first = second.trySplit();
+		assertEquals("balanced split", first.estimateSize() + second.estimateSize(), 100000);
+		assertTrue("balanced split", Math.abs(first.estimateSize() - second.estimateSize()) <= 128);
+
+		// an iteration in flight keeps travelling the ring it started on
+		network = Network.defaultExample();
+		names = new StringBuffer(50);
+		Iterator<Node> nodes = network.iterator();
+		names.append(nodes.next().name_).append(' ');
+		network.removeNode("Filip");
+		network.insertNodeAfter("n1", new Workstation("Ann"));
+		while (nodes.hasNext()) {
+			names.append(nodes.next().name_).append(' ');
+		}
+		assertEquals("iteration order (removed first)", names.toString(), "Filip n1 Hans Andy ");
+		names = new StringBuffer(50);
+		for (Node node : network) {
+			names.append(node.name_).append(' ');
+		}
+		assertEquals("iteration order (after)", names.toString(), "n1 Ann Hans Andy ");
+	}
+
+	public void testTopologySnapshots() {
+		final Network network = Network.defaultExample();
+		StringWriter report = new StringWriter(500);
+		int version = network.topologyVersion();
+
+		network.insertNodeAfter("Hans", new Workstation("Ann"));
+		assertTrue("topologyVersion (insert)", network.topologyVersion() > version);
+		assertTrue("hasWorkstation (inserted)", network.hasWorkstation("Ann"));
+		assertTrue("consistentNetwork (insert)", network.consistentNetwork());
+		assertTrue("PrintSuccess (inserted)",
+				network.requestWorkstationPrintsDocument("Ann", "Hello World", "Andy", report));
+		version = network.topologyVersion();
+		network.removeNode("Filip");
+		assertTrue("topologyVersion (remove)", network.topologyVersion() > version);
+		assertFalse("hasWorkstation (removed)", network.hasWorkstation("Filip"));
+		assertTrue("consistentNetwork (remove)", network.consistentNetwork());
+		assertEquals("toString() (remove first)", network.toString(),
+				"Node n1 [Node] -> Workstation Hans [Workstation] -> Workstation Ann [Workstation] -> Printer Andy [Printer] ->  ... ");
+
+		// a broadcast in flight keeps travelling the ring it started on
+		network.insertNodeAfter("n1", new Node("hook") {
+			public void logging(Writer report, Packet packet) {
+				super.logging(report, packet);
+				if (network.hasWorkstation("Ann")) {
+					network.removeNode("Ann");
+				}
+			}
+		});
+		report = new StringWriter(500);
+		network.setReportVerbosity(ReportVerbosity.SUMMARY);
+		assertTrue("Broadcast (in flight)", network.requestBroadcast(report));
+		assertTrue("Broadcast (after)", network.requestBroadcast(report));
+		assertEquals("snapshots", report.toString(),
+				"Broadcast Request\n" + "\tPacket passed on by 5 nodes.\n"
+						+ ">>> Broadcast travelled whole token ring.\n\n" + "Broadcast Request\n"
+						+ "\tPacket passed on by 4 nodes.\n" + ">>> Broadcast travelled whole token ring.\n\n");
+
+		Network large = HopLoopBenchmark.largeNetwork(100);
+		large.setReportVerbosity(ReportVerbosity.SUMMARY);
+		for (int i = 0; i < 200; i++) {
+			large.insertNodeAfter("n51", new Node("m" + i));
+		}
+		large.removeNode("ws0");
+		assertTrue("consistentNetwork (large)", large.consistentNetwork());
+		int i = 0;
+		for (Node node : large) {
+			if ((i >= 51) && (i < 251)) {
+				assertEquals("inserted", node.name_, "m" + (250 - i));
+			}
+			i++;
+		}
+		assertEquals("nrOfNodes (large)", i, 299);
+		assertEquals("forward", simulatedHops(large, "ws10", "printer"), 289);
+		large.setDualRing(true);
+		assertEquals("backward", simulatedHops(large, "ws10", "printer"), 10);
+		assertEquals("forward (dual ring)", simulatedHops(large, "ws60", "printer"), 39);
+
+		// removing the inserted nodes drops whole chunks
+		for (i = 0; i < 200; i++) {
+			large.removeNode("m" + i);
+		}
+		large.insertNodeAfter("n98", new Workstation("ws99"));
+		assertTrue("consistentNetwork (removed)", large.consistentNetwork());
+		assertEquals("backward (removed)", simulatedHops(large, "ws10", "printer"), 10);
+		assertEquals("forward (removed)", simulatedHops(large, "ws60", "printer"), 40);
+		assertEquals("inserted (removed)", simulatedHops(large, "ws99", "printer"), 1);
+	}
+
+	public void testConcurrentTopologyChanges() throws InterruptedException {
+		final Network network = HopLoopBenchmark.largeNetwork(2000);
+		network.setReportVerbosity(ReportVerbosity.sampled(7));
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final Throwable[] failures = new Throwable[3];
+		Thread[] readers = new Thread[failures.length];
+		for (int r = 0; r < readers.length; r++) {
+			final int reader = r;
+			readers[r] = new Thread(() -> {
+				try {
+					while (!done.get()) {
+						StringWriter report = new StringWriter(500);
+						assertTrue("Broadcast (concurrent)", network.requestBroadcast(report));
+						assertTrue("PrintSuccess (concurrent)",
+								network.requestWorkstationPrintsDocument("ws10", "Hello World", "printer", report));
+						network.toString();
+					}
+				} catch (Throwable exc) {
+					failures[reader] = exc;
+				}
+			});
+			readers[r].start();
+		}
+		for (int i = 0; i < 2000; i++) {
+			network.insertNodeAfter("n77", new Node("x" + i));
+			network.insertNodeAfter("ws10", new Workstation("w" + i));
+			network.removeNode("x" + i);
+			network.removeNode("w" + i);
+		}
+		done.set(true);
+		for (int r = 0; r < readers.length; r++) {
+			readers[r].join();
+			assertNull("failure of reader " + r, failures[r]);
+		}
+		assertTrue("consistentNetwork (concurrent)", network.consistentNetwork());
+		network.setReportVerbosity(ReportVerbosity.SUMMARY);
+		assertEquals("forward (concurrent)", simulatedHops(network, "ws10", "printer"), 1989);
+	}
+
+	public void testValidateTopology() {
+		Network network = Network.defaultExample();
+		TopologyDiagnostics diagnostics = network.validateTopology();
+		assertTrue("consistent", diagnostics.isConsistent());
+		assertEquals("ringSize", diagnostics.ringSize(), 4);
+
+		Node[] nodes = new Node[4];
+		int i = 0;
+		for (Node node : network) {
+			nodes[i++] = node;
+		}
+		Node extra = new Workstation("Extra");
+		nodes[3].nextNode_ = extra; // Andy -> Extra -> n1: not circular
+		extra.nextNode_ = nodes[1];
+		nodes[1].name_ = "Filip"; // n1 renamed to a duplicate name
+		assertFalse("consistentNetwork", network.consistentNetwork());
+		diagnostics = network.validateTopology();
+		assertFalse("inconsistent", diagnostics.isConsistent());
+		assertEquals("ringSize (not circular)", diagnostics.ringSize(), 5);
+		assertEquals("diagnostics", diagnostics.toString(),
+				"Token ring of 5 nodes: 3 problems\n\tDUPLICATE_NAME 'Filip' at 1 (see 0)"
+						+ "\n\tNOT_CIRCULAR 'Extra' at 4 (see 1)\n\tUNREGISTERED_WORKSTATION 'Extra' at 4");
+
+		nodes[0].nextNode_ = nodes[3]; // Filip -> Andy -> Extra -> n1 -> Hans -> Andy
+		nodes[1].name_ = "n1";
+		nodes[2].nextNode_ = null; // Hans has no next node
+		diagnostics = network.validateTopology();
+		assertEquals("diagnostics (broken)", diagnostics.toString(),
+				"Token ring of 5 nodes: 2 problems\n\tUNREGISTERED_WORKSTATION 'Extra' at 2"
+						+ "\n\tBROKEN_LINK 'Hans' at 4");
+
+		nodes[3].nextNode_ = nodes[0]; // Filip -> Andy -> Filip, Hans is no longer on the ring
+		diagnostics = network.validateTopology();
+		assertEquals("diagnostics (missing)", diagnostics.toString(),
+				"Token ring of 2 nodes: 1 problem\n\tMISSING_WORKSTATION 'Hans'");
+
+		diagnostics = Network.ringOf(new Node[] { new Workstation("w"), new Node("n") }).validateTopology();
+		assertEquals("diagnostics (no printer)", diagnostics.toString(),
+				"Token ring of 2 nodes: 1 problem\n\tNO_PRINTER");
+
+		network = HopLoopBenchmark.largeNetwork(200000);
+		assertTrue("consistent (large)", network.validateTopology().isConsistent());
+	}
+
 	public void testWorkstationPrintsDocument() {
 		Network network = Network.defaultExample();
 		StringWriter report = new StringWriter(500);
@@ -134,6 +353,57 @@ public class LANTests extends TestCase {
 				network.requestWorkstationPrintsDocument("Filip", "!PS Hello World in postscript", "Hans", report));
 	}
 
+	public void testPrinterGroup() {
+		Network network = Network.defaultExample();
+		StringWriter report = new StringWriter(500);
+
+		network.definePrinterGroup("floor", new String[] { "UnknownPrinter", "Hans", "Andy" });
+		network.definePrinterGroup("noPrinters", new String[] { "UnknownPrinter", "Hans" });
+		assertTrue("hasPrinterGroup ", network.hasPrinterGroup("floor"));
+		assertFalse("hasPrinterGroup (printer)", network.hasPrinterGroup("Andy"));
+		assertTrue("PrintSuccess (group)", network.requestWorkstationPrintsDocument("Filip", "Hello World", "floor", report));
+		assertTrue("routed to member", report.toString().indexOf("\tPrinter group 'floor' routes job to 'Andy'.\n") > 0);
+		assertFalse("PrintFailure (group without printers)",
+				network.requestWorkstationPrintsDocument("Filip", "Hello World", "noPrinters", report));
+	}
+
+	public void testPrinterGroupSelection() {
+		final Network[] network = new Network[1];
+		final StringWriter nested = new StringWriter(500);
+		Node hook = new Node("hook") {
+			public void logging(Writer report, Packet packet) {
+				super.logging(report, packet);
+				if (packet.destination.equals("Near")) {
+					network[0].requestWorkstationPrintsDocument("Filip", "Hello World", "floor", nested);
+				}
+			}
+		};
+		Printer near = new Printer("Near");
+		network[0] = Network.ringOf(new Node[] { new Workstation("Filip"), hook, near, new Node("n1"),
+				new Printer("Far"), new Workstation("Hans") });
+		network[0].definePrinterGroup("floor", new String[] { "Far", "Near" });
+		StringWriter report = new StringWriter(500);
+
+		assertTrue("PrintSuccess (nearest)",
+				network[0].requestWorkstationPrintsDocument("Filip", "Hello World", "floor", report));
+		assertTrue("nearest", report.toString().indexOf("routes job to 'Near'") > 0);
+		assertEquals("queueDepth (done)", near.queueDepth(), 0);
+
+		report = new StringWriter(500);
+		near.jobQueued();
+		assertTrue("PrintSuccess (least loaded)",
+				network[0].requestWorkstationPrintsDocument("Filip", "Hello World", "floor", report));
+		assertTrue("least loaded", report.toString().indexOf("routes job to 'Far'") > 0);
+		near.jobDone();
+
+		// while a job sent directly to Near is in flight, the group avoids Near
+		report = new StringWriter(500);
+		assertTrue("PrintSuccess (direct)",
+				network[0].requestWorkstationPrintsDocument("Filip", "Hello World", "Near", report));
+		assertTrue("concurrent job counted", nested.toString().indexOf("routes job to 'Far'") > 0);
+		assertEquals("queueDepth (direct done)", near.queueDepth(), 0);
+	}
+
 	public void testBroadcast() {
 		Network network = Network.defaultExample();
 		StringWriter report = new StringWriter(500);
@@ -141,6 +411,353 @@ public class LANTests extends TestCase {
 		assertTrue("Broadcast ", network.requestBroadcast(report));
 	}
 
+	public void testMulticast() {
+		Network network = Network.defaultExample();
+		StringWriter report = new StringWriter(500);
+
+		Map<String, Boolean> deliveries = network.requestMulticast(
+				MulticastGroup.ofNames(new String[] { "Andy", "Filip", "Nobody" }), report);
+		assertEquals("deliveries (names)", deliveries.toString(), "{Filip=true, Andy=true, Nobody=false}");
+		assertEquals("report", report.toString(),
+				"Multicast Request\n" + "\tNode 'Filip' accepts multicast packet.\n"
+						+ "\tNode 'Filip' passes packet on.\n" + "\tNode 'n1' passes packet on.\n"
+						+ "\tNode 'Hans' passes packet on.\n"
+						+ "\tNode 'Andy' accepts multicast packet.\n" + "\tNode 'Andy' passes packet on.\n"
+						+ ">>> Multicast delivered to 2 of 3 members.\n\n");
+
+		MulticastGroup printers = MulticastGroup.ofKind(NodeKind.PRINTER);
+		assertEquals("deliveries (kind)", network.requestMulticast(printers, report).toString(), "{Andy=true}");
+		network.definePrinterGroup("floor", new String[] { "Andy" }); // does not change the ring
+		assertEquals("deliveries (kind, again)", network.requestMulticast(printers, report).toString(),
+				"{Andy=true}");
+		assertEquals("deliveries (predicate)",
+				network.requestMulticast(MulticastGroup.matching(node -> node.name_.startsWith("H")), report)
+						.toString(),
+				"{Hans=true}");
+		assertEquals("deliveries (empty)",
+				network.requestMulticast(MulticastGroup.ofNames(new String[0]), report).toString(), "{}");
+	}
+
+	public void testReportVerbosity() {
+		Network network = Network.defaultExample();
+		StringWriter report = new StringWriter(500);
+
+		assertEquals("reportVerbosity (default)", network.reportVerbosity(), ReportVerbosity.FULL);
+		network.setReportVerbosity(ReportVerbosity.SUMMARY);
+		assertTrue("PrintSuccess ", network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report));
+		assertFalse("PrintFailure (UnkownPrinter) ",
+				network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report));
+		assertEquals("summary", report.toString(),
+				"'Filip' requests printing of 'Hello World' on 'Andy' ...\n" + "\tPacket passed on by 3 nodes.\n"
+						+ "\tAccounting -- author = 'Unknown' -- title = 'ASCII DOCUMENT'\n"
+						+ ">>> ASCII Print job delivered.\n\n"
+						+ "'Filip' requests printing of 'Hello World' on 'UnknownPrinter' ...\n"
+						+ "\tPacket passed on by 4 nodes.\n" + ">>> Destinition not found, print job cancelled.\n\n");
+
+		report = new StringWriter(500);
+		network.setReportVerbosity(ReportVerbosity.sampled(2));
+		assertTrue("Broadcast (traced)", network.requestBroadcast(report));
+		assertTrue("Broadcast (summarised)", network.requestBroadcast(report));
+		assertEquals("Multicast (traced)",
+				network.requestMulticast(MulticastGroup.ofKind(NodeKind.PRINTER), report).toString(), "{Andy=true}");
+		assertEquals("sampled", report.toString(),
+				"Broadcast Request\n" + "\tNode 'Filip' accepts broadcase packet.\n"
+						+ "\tNode 'Filip' passes packet on.\n" + "\tNode 'n1' accepts broadcase packet.\n"
+						+ "\tNode 'n1' passes packet on.\n" + "\tNode 'Hans' accepts broadcase packet.\n"
+						+ "\tNode 'Hans' passes packet on.\n" + "\tNode 'Andy' accepts broadcase packet.\n"
+						+ "\tNode 'Andy' passes packet on.\n" + ">>> Broadcast travelled whole token ring.\n\n"
+						+ "Broadcast Request\n" + "\tPacket passed on by 4 nodes.\n"
+						+ ">>> Broadcast travelled whole token ring.\n\n" + "Multicast Request\n"
+						+ "\tNode 'Filip' passes packet on.\n" + "\tNode 'n1' passes packet on.\n"
+						+ "\tNode 'Hans' passes packet on.\n" + "\tNode 'Andy' accepts multicast packet.\n"
+						+ "\tNode 'Andy' passes packet on.\n" + ">>> Multicast delivered to 1 of 1 members.\n\n");
+	}
+
+	public void testTokenRingModel() {
+		Node[] nodes = new Node[23];
+		for (int i = 0; i < nodes.length; i++) {
+			if (i % 5 == 0) {
+				nodes[i] = new Workstation("ws" + i);
+			} else if (i % 7 == 4) {
+				nodes[i] = new Printer("pr" + i);
+			} else {
+				nodes[i] = new Node("n" + i);
+			}
+		}
+		Network network = Network.ringOf(nodes);
+		network.setReportVerbosity(ReportVerbosity.SUMMARY);
+		for (int dual = 0; dual < 2; dual++) {
+			network.setDualRing(dual == 1);
+			TokenRingModel model = network.tokenRingModel();
+			assertEquals("ringSize", model.ringSize(), 23);
+			assertEquals("nrOfWorkstations", model.nrOfWorkstations(), 5);
+			assertEquals("nrOfPrinters", model.nrOfPrinters(), 3);
+
+			int simulated = 0;
+			for (int i = 0; i < nodes.length; i += 5) {
+				for (int j = 4; j < nodes.length; j += 7) {
+					simulated += simulatedHops(network, "ws" + i, "pr" + j);
+				}
+			}
+			assertEquals("expectedPrintHops (dual = " + dual + ")", model.expectedPrintHops(), simulated / 15.0,
+					1e-9);
+			assertEquals("expectedHops (broadcasts)", model.expectedHops(1.0), 23.0, 1e-9);
+			assertEquals("sampleExpectedHops", model.sampleExpectedHops(0.25, 200000, 42L),
+					model.expectedHops(0.25), 0.2);
+		}
+
+		TokenRingModel model = new TokenRingModel(10, new int[] { 0, 5 }, new int[] { 1, 8 }, true);
+		assertEquals("expectedPrintHops (dual ring)", model.expectedPrintHops(), (1 + 2 + 4 + 3) / 4.0, 1e-9);
+		TokenRingModel.Prediction prediction = model.predict(new TokenRingModel.JobMix(0.1, 0.0, 1.0, 4.0));
+		assertEquals("ringUtilisation", prediction.ringUtilisation, 0.25, 1e-9);
+		assertEquals("ringQueueingDelay", prediction.ringQueueingDelay, 0.25 * 2.5 / 0.75, 1e-9);
+		assertEquals("printerUtilisation", prediction.printerUtilisation, 0.2, 1e-9);
+		assertEquals("printerQueueingDelay", prediction.printerQueueingDelay, 0.2 * 4.0 / 0.8, 1e-9);
+		prediction = model.predict(new TokenRingModel.JobMix(1.0, 0.0, 1.0, 4.0));
+		assertTrue("saturated", Double.isInfinite(prediction.ringQueueingDelay));
+	}
+
+	/**
+	 * Answer the number of hops the simulator reports for a print job from
+	 * #workstation to #printer; #network must summarise its reports.
+	 */
+	private int simulatedHops(Network network, String workstation, String printer) {
+		StringWriter report = new StringWriter(200);
+		assertTrue("PrintSuccess ", network.requestWorkstationPrintsDocument(workstation, "Hello World", printer, report));
+		String summary = report.toString();
+		int start = summary.indexOf("passed on by ") + "passed on by ".length();
+		return Integer.parseInt(summary.substring(start, summary.indexOf(" nodes", start)));
+	}
+
+	public void testDualRing() {
+		Network network = Network.defaultExample();
+		StringWriter report = new StringWriter(500);
+
+		assertFalse("isDualRing (default)", network.isDualRing());
+		network.setDualRing(true);
+		assertTrue("isDualRing", network.isDualRing());
+		assertTrue("PrintSuccess ", network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report));
+		assertEquals("shortest path", report.toString(),
+				"'Filip' requests printing of 'Hello World' on 'Andy' ...\n" + "\tNode 'Filip' passes packet on.\n"
+						+ "\tAccounting -- author = 'Unknown' -- title = 'ASCII DOCUMENT'\n"
+						+ ">>> ASCII Print job delivered.\n\n");
+		assertFalse("PrintFailure (UnkownPrinter) ",
+				network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report));
+		assertFalse("PrintFailure (print on Workstation) ",
+				network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report));
+		assertTrue("Broadcast ", network.requestBroadcast(report));
+	}
+
+	public void testParallelSimulate() {
+		ByteArrayOutputStream expected = new ByteArrayOutputStream(4096);
+		PrintStream out = new PrintStream(expected);
+		LANSimulation.simulate(out);
+		out.flush();
+
+		ByteArrayOutputStream outputs = new ByteArrayOutputStream(8 * 4096);
+		PrintStream parallelOut = new PrintStream(outputs);
+		LANSimulation.simulateInParallel(8, 2, parallelOut);
+		parallelOut.flush();
+		StringBuffer eightTimes = new StringBuffer(8 * 4096);
+		for (int i = 0; i < 8; i++) {
+			eightTimes.append(expected.toString());
+		}
+		assertEquals("outputs in order", outputs.toString(), eightTimes.toString());
+	}
+
+	public void testTraceReplay() throws IOException {
+		Network network = Network.defaultExample();
+		StringWriter report = new StringWriter(500);
+		ByteArrayOutputStream trace = new ByteArrayOutputStream(500);
+		TraceRecorder recorder = new TraceRecorder(trace);
+
+		network.setTraceRecorder(recorder);
+		network.definePrinterGroup("floor", new String[] { "Andy" });
+		network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report);
+		network.requestWorkstationPrintsDocument("Filip", "Hello World", "floor", report);
+		network.requestWorkstationPrintsDocument("Hans", "!PS Hello World in postscript", "n1", report);
+		network.setDualRing(true);
+		network.requestBroadcast(report);
+		network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report);
+		network.insertNodeAfter("n1", new Printer("Bob"));
+		network.requestWorkstationPrintsDocument("Hans", "Hello World", "Bob", report);
+		network.removeNode("Bob");
+		network.requestWorkstationPrintsDocument("Hans", "Hello World", "Bob", report);
+		recorder.close();
+		assertFalse("checkError", recorder.checkError());
+
+		StringWriter replayReport = new StringWriter(500);
+		TraceReplayer replayer = new TraceReplayer(new ByteArrayInputStream(trace.toByteArray()));
+		assertTrue("replay ", replayer.replay(replayReport, 0.0));
+		assertEquals("requests", replayer.requests(), 7);
+		assertEquals("mismatches", replayer.mismatches(), 0);
+		assertEquals("replayed report", replayReport.toString(), report.toString());
+		assertEquals("replayed network", replayer.network().toString(), network.toString());
+	}
+
+	public void testShardedNetwork() throws IOException {
+		Network network = Network.defaultExample();
+		StringWriter report = new StringWriter(500);
+		StringWriter shardedReport = new StringWriter(500);
+		ShardCoordinator coordinator = ShardCoordinator.partition(network, 3);
+
+		try {
+			assertEquals("nrOfShards", coordinator.nrOfShards(), 3);
+			String[] printers = { "Andy", "UnknownPrinter", "Hans", "n1" };
+			for (int i = 0; i < printers.length; i++) {
+				assertEquals("print on " + printers[i],
+						coordinator.requestWorkstationPrintsDocument("Hans", "Hello World", printers[i], shardedReport),
+						network.requestWorkstationPrintsDocument("Hans", "Hello World", printers[i], report));
+			}
+			assertTrue("Broadcast ", coordinator.requestBroadcast(shardedReport));
+			network.requestBroadcast(report);
+			assertEquals("sharded report", shardedReport.toString(), report.toString());
+		} finally {
+			coordinator.close();
+		}
+	}
+
+	/**
+	 * Test whether handling requests in steady state allocates (almost) no
+	 * memory. Skipped when the JVM cannot measure the allocations of a thread.
+	 * The preconditions check the snapshot of the ring a request travels, which
+	 * allocates nothing either, so all allocations are counted.
+	 */
+	public void testRequestAllocation() {
+		java.lang.management.ThreadMXBean bean = java.lang.management.ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			return;
+		}
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+		if (!threads.isThreadAllocatedMemorySupported() || !threads.isThreadAllocatedMemoryEnabled()) {
+			return;
+		}
+		Network network = Network.defaultExample();
+		Writer report = new HopLoopBenchmark.NullWriter();
+
+		long perRequest = allocatedPerRequest(threads, network, report);
+		assertTrue("allocated " + perRequest + " bytes per request", perRequest <= 16);
+		network.setReportVerbosity(ReportVerbosity.sampled(3));
+		perRequest = allocatedPerRequest(threads, network, report);
+		assertTrue("allocated " + perRequest + " bytes per sampled request", perRequest <= 16);
+	}
+
+	private long allocatedPerRequest(com.sun.management.ThreadMXBean threads, Network network, Writer report) {
+		long thread = Thread.currentThread().getId();
+		int rounds = 20000, requestsPerRound = 4;
+
+		runRequests(network, report, rounds); // warm up
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		runRequests(network, report, rounds);
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+		return allocated / (rounds * requestsPerRound);
+	}
+
+	private void runRequests(Network network, Writer report, int rounds) {
+		for (int i = 0; i < rounds; i++) {
+			network.requestWorkstationPrintsDocument("Filip", "author: FILIP   Hello World", "Andy", report);
+			network.requestWorkstationPrintsDocument("Filip", "!PS Hello.author:Filip.title:Hello.", "Andy", report);
+			network.requestWorkstationPrintsDocument("Filip", "Hello World", "UnknownPrinter", report);
+			network.requestBroadcast(report);
+		}
+	}
+
+	public void testAccountingLedger() throws IOException {
+		File directory = java.nio.file.Files.createTempDirectory("ledger").toFile();
+		try {
+			Network network = Network.defaultExample();
+			StringWriter report = new StringWriter(500);
+			AccountingLedger ledger = new AccountingLedger(directory, 2);
+
+			network.setAccountingLedger(ledger);
+			network.requestWorkstationPrintsDocument("Filip", "author: FILIP   Hello World", "Andy", report);
+			network.requestWorkstationPrintsDocument("Hans", "!PS Hello.author:Filip.title:Hello.", "Andy", report);
+			network.requestWorkstationPrintsDocument("Filip", "Hello World", "Andy", report);
+			network.requestWorkstationPrintsDocument("Filip", "Hello World", "Hans", report);
+			assertEquals("nrOfJobs", ledger.nrOfJobs(), 3);
+			assertEquals("jobsByPrinter", ledger.jobsByPrinter("Andy"), 3);
+			assertEquals("bytesByPrinter", ledger.bytesByPrinter("Andy"), 27 + 35 + 11);
+			assertEquals("jobsByAuthor", ledger.jobsByAuthor("Filip"), 1);
+			assertEquals("jobsByAuthor (ASCII)", ledger.jobsByAuthor("FILIP   "), 1);
+			assertEquals("jobsByAuthor (none)", ledger.jobsByAuthor("Nobody"), 0);
+			assertEquals("nrOfSegments (rollover)", ledger.nrOfSegments(), 2);
+			ledger.close();
+
+			ledger = new AccountingLedger(directory, 2);
+			assertEquals("nrOfJobs (reopened)", ledger.nrOfJobs(), 3);
+			assertEquals("bytesByAuthor (reopened)", ledger.bytesByAuthor("Unknown"), 11);
+			ledger.record("Filip", "Andy", "Unknown", "ASCII DOCUMENT", AccountingLedger.ASCII, 5);
+			ledger.compact();
+			assertEquals("nrOfSegments (compacted)", ledger.nrOfSegments(), 2);
+			ledger.close();
+
+			ledger = new AccountingLedger(directory, 2);
+			assertEquals("nrOfJobs (compacted)", ledger.nrOfJobs(), 4);
+			assertEquals("bytesByAuthor (compacted)", ledger.bytesByAuthor("Unknown"), 16);
+			assertFalse("checkError", ledger.checkError());
+			ledger.close();
+		} finally {
+			File[] files = directory.listFiles();
+			for (int i = 0; i < files.length; i++) {
+				files[i].delete();
+			}
+			directory.delete();
+		}
+	}
+
+	public void testAccountingLedgerRecovery() throws IOException {
+		File directory = java.nio.file.Files.createTempDirectory("ledger").toFile();
+		try {
+			AccountingLedger ledger = new AccountingLedger(directory, 2);
+			ledger.record("Filip", "Andy", "Filip", "Hello", AccountingLedger.ASCII, 5);
+			ledger.record("Filip", "Andy", "Filip", "Hello", AccountingLedger.ASCII, 6);
+			ledger.record("Filip", "Andy", "Newcomer", "Hello", AccountingLedger.ASCII, 7);
+			ledger.close();
+
+			// a crash lost the dictionary entry of "Newcomer", but not the job
+			File dictionary = new File(directory, "dictionary.dat");
+			RandomAccessFile raf = new RandomAccessFile(dictionary, "rw");
+			raf.setLength(dictionary.length() - 4 - "Newcomer".length());
+			raf.close();
+			ledger = new AccountingLedger(directory, 2);
+			assertEquals("nrOfJobs (lost string)", ledger.nrOfJobs(), 2);
+			ledger.record("Filip", "Andy", "Other", "Hello", AccountingLedger.ASCII, 8);
+			assertEquals("jobsByAuthor (reused id)", ledger.jobsByAuthor("Other"), 1);
+			assertEquals("jobsByAuthor (lost)", ledger.jobsByAuthor("Newcomer"), 0);
+			ledger.close();
+
+			// a crash after committing a compaction, before the old segments were removed
+			for (int column = 0; column < 6; column++) {
+				String suffix = new String[] { ".workstation", ".printer", ".author", ".title", ".type", ".size" }[column];
+				OutputStream out = new FileOutputStream(new File(directory, "segment-000009" + suffix + ".tmp"));
+				for (int segment = 1; segment <= 2; segment++) {
+					out.write(java.nio.file.Files.readAllBytes(new File(directory, "segment-00000" + segment + suffix).toPath()));
+				}
+				out.close();
+			}
+			DataOutputStream marker = new DataOutputStream(new FileOutputStream(new File(directory, "compaction.commit")));
+			marker.writeInt(9);
+			marker.close();
+			new FileOutputStream(new File(directory, "stray.tmp")).close();
+			ledger = new AccountingLedger(directory, 2);
+			assertEquals("nrOfJobs (committed compaction)", ledger.nrOfJobs(), 3);
+			assertEquals("nrOfSegments (committed compaction)", ledger.nrOfSegments(), 2);
+			assertEquals("bytesByAuthor (committed compaction)", ledger.bytesByAuthor("Filip"), 11);
+			ledger.close();
+			String[] names = directory.list();
+			for (int i = 0; i < names.length; i++) {
+				assertFalse("left over " + names[i], names[i].endsWith(".tmp") || names[i].equals("compaction.commit")
+						|| names[i].startsWith("segment-000001") || names[i].startsWith("segment-000002"));
+			}
+		} finally {
+			File[] files = directory.listFiles();
+			for (int i = 0; i < files.length; i++) {
+				files[i].delete();
+			}
+			directory.delete();
+		}
+	}
+
 	/**
 	 * Test whether output routines work as expected. This is done by comparing
 	 * generating output on a file "useOutput.txt" and comparing it to a file